@@ -35,6 +35,11 @@ public class AstPrinter implements Expression.Visitor<String>, Statement.Visitor
         return parenthesize("group", expr._left);
     }
 
+    @Override
+    public String visitIndexExpr(Expression.IndexExpression expr) {
+        return parenthesize("[]", expr.object, expr.index);
+    }
+
     @Override
     public String visitLiteralExpr(Expression.LiteralExpression expr) {
 
@@ -54,6 +59,11 @@ public class AstPrinter implements Expression.Visitor<String>, Statement.Visitor
         return parenthesize2("=", expr.object, expr.name.lexeme, expr.value);
     }
 
+    @Override
+    public String visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        return parenthesize("[]=", expr.object, expr.index, expr.value);
+    }
+
     @Override
     public String visitSuperExpr(Expression.SuperExpression expr) {
         return parenthesize2("super", expr.method);
@@ -162,6 +172,10 @@ public class AstPrinter implements Expression.Visitor<String>, Statement.Visitor
 
         builder.append(") ");
 
+        if (stmt.body == null) {
+            return builder.append("...)").toString();
+        }
+
         for (Statement body : stmt.body) {
             builder.append(body.accept(this));
         }
@@ -180,6 +194,11 @@ public class AstPrinter implements Expression.Visitor<String>, Statement.Visitor
                 stmt.elseBranch);
     }
 
+    @Override
+    public String visitImportStmt(Statement.Import stmt) {
+        return "(import \"" + stmt.path + "\")";
+    }
+
     @Override
     public String visitPrintStmt(Statement.Print stmt) {
         return parenthesize("print", stmt.expression);
@@ -0,0 +1,27 @@
+package com.pikl;
+
+/*
+
+    A FUNCTION BODY COMPILED FOR THE REGISTER VM
+
+ */
+
+class Chunk {
+
+    final int[] code;
+    final Object[] constants;
+
+    // TOKEN TO REPORT RUNTIME ERRORS AGAINST, INDEXED BY INSTRUCTION START
+    final Token[] tokens;
+
+    final int arity;
+    final int registers;
+
+    Chunk(int[] code, Object[] constants, Token[] tokens, int arity, int registers) {
+        this.code = code;
+        this.constants = constants;
+        this.tokens = tokens;
+        this.arity = arity;
+        this.registers = registers;
+    }
+}
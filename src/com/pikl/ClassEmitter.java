@@ -0,0 +1,300 @@
+package com.pikl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    MINIMAL JVM CLASS FILE WRITER FOR THE JIT
+
+    ONLY WHAT THE JIT NEEDS: A CONSTANT POOL, static final FIELDS, METHODS
+    WITH A Code ATTRIBUTE AND RAW BYTECODE. CLASSES ARE WRITTEN AS VERSION 49 (JAVA 5)
+    SO THE VERIFIER INFERS TYPES ITSELF AND NO StackMapTable IS NEEDED
+
+ */
+
+class ClassEmitter {
+
+    // OPCODES USED BY THE JIT
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int DUP = 0x59;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int GETFIELD = 0xb4;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ANEWARRAY = 0xbd;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    private final int thisClass;
+    private final int superClass;
+
+    ClassEmitter(String name, String superName) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+    }
+
+    // CONSTANT POOL
+
+    int utf8(String value) {
+        return entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String name) {
+        int nameIndex = utf8(name);
+        return entry("C" + name, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int integer(int value) {
+        return entry("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, "M", owner, name, descriptor);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, "F", owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String kind, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int typeIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(typeIndex);
+        });
+        return entry(kind + owner + "." + name + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, Writer writer) {
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+
+        try {
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    // FIELDS, ONLY static final ONES, SET BY THE STATIC INITIALIZER
+
+    void staticField(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_STATIC | ACC_FINAL);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(0);      // NO ATTRIBUTES
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        fields.add(bytes.toByteArray());
+    }
+
+    // METHODS
+
+    void method(String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        method(ACC_PUBLIC, name, descriptor, maxStack, maxLocals, code);
+    }
+
+    void staticInitializer(int maxStack, byte[] code) {
+        method(ACC_STATIC, "<clinit>", "()V", maxStack, 0, code);
+    }
+
+    private void method(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+
+            out.writeShort(codeIndex);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);      // NO EXCEPTION TABLE
+            out.writeShort(0);      // NO ATTRIBUTES
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);      // INTERFACES
+            out.writeShort(fields.size());
+            for (byte[] field : fields) out.write(field);
+
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+
+            out.writeShort(0);      // ATTRIBUTES
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    // GROWABLE BYTECODE BUFFER WITH BRANCH PATCHING
+
+    static class Code {
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+
+        int length() {
+            return length;
+        }
+
+        void op(int op) {
+            u1(op);
+        }
+
+        void op1(int op, int operand) {
+            u1(op);
+            u1(operand);
+        }
+
+        void op2(int op, int operand) {
+            u1(op);
+            u2(operand);
+        }
+
+        // PUSH AN int USING THE SHORTEST FORM
+        void pushInt(ClassEmitter emitter, int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op1(BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op2(SIPUSH, value);
+            } else {
+                op2(LDC_W, emitter.integer(value));
+            }
+        }
+
+        void load(int local) {
+            op1(ALOAD, local);
+        }
+
+        void store(int local) {
+            op1(ASTORE, local);
+        }
+
+        // EMIT A BRANCH AND RETURN ITS POSITION FOR patch
+        int branch(int op) {
+            int at = length;
+            u1(op);
+            u2(0);
+            return at;
+        }
+
+        void patch(int at, int target) {
+            int offset = target - at;
+            bytes[at + 1] = (byte)(offset >> 8);
+            bytes[at + 2] = (byte)offset;
+        }
+
+        private void u1(int value) {
+            if (length == bytes.length) {
+                byte[] grown = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+            bytes[length++] = (byte)value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, 0, result, 0, length);
+            return result;
+        }
+    }
+}
@@ -9,6 +9,10 @@ class Environment {
 
     final Environment enclosing;
 
+    Map<String, Object> values() {
+        return values;
+    }
+
     void define(String name, Object value) {
         values.put(name, value);
     }
@@ -36,8 +40,13 @@ class Environment {
         if (values.containsKey(name.lexeme)) {
 
             Object value = values.get(name.lexeme);
+
+            // IMPORTED BUT THE MODULE HASN'T RUN YET
+            if (value instanceof ModuleLoader.Module)
+                value = ((ModuleLoader.Module)value).force(name);
+
             if (value != null)
-                return values.get(name.lexeme);
+                return value;
 
 
             // VARIABLE NOT INITIALISED
@@ -58,6 +67,10 @@ class Environment {
 
         // CHECK LOCAL SCOPE FIRST
         if (values.containsKey(name.lexeme)) {
+            Object current = values.get(name.lexeme);
+            if (current instanceof ModuleLoader.Module)
+                ((ModuleLoader.Module)current).force(name);
+
             values.put(name.lexeme, value);
             return;
         }
@@ -74,10 +87,12 @@ class Environment {
     }
 
     Environment() {
+        Stats.environmentsCreated++;
         enclosing = null;
     }
 
     Environment(Environment enclosing) {
+        Stats.environmentsCreated++;
         this.enclosing = enclosing;
     }
 }
@@ -17,9 +17,11 @@ abstract class Expression {
         R visitCallExpr(CallExpression expr);
         R visitGetExpr(GetExpression expr);
         R visitGroupingExpr(GroupExpression expr);
+        R visitIndexExpr(IndexExpression expr);
         R visitLiteralExpr(LiteralExpression expr);
         R visitLogicalExpr(LogicalExpression expr);
         R visitSetExpr(SetExpression expr);
+        R visitSetIndexExpr(SetIndexExpression expr);
         R visitSuperExpr(SuperExpression expr);
         R visitThisExpr(ThisExpression expr);
         R visitUnaryExpr(UnaryExpression expr);
@@ -40,6 +42,12 @@ abstract class Expression {
         Expression _left;
         Expression _right;
         Token _type;
+
+        // SET WHEN THE VALUE CAN'T CHANGE WHILE A LOOP RUNS
+        Invariant invariant;
+
+        // DOUBLE OR STRING WHEN THE Typer HAS PROVED THE OPERAND TYPES
+        Typer.Type operands;
     }
 
     static class UnaryExpression extends Expression {
@@ -54,6 +62,9 @@ abstract class Expression {
 
         Expression _left;
         Token _type;
+
+        // DOUBLE WHEN THE Typer HAS PROVED THE OPERAND IS ONE
+        Typer.Type operand;
     }
 
     static class GroupExpression extends Expression {
@@ -92,6 +103,12 @@ abstract class Expression {
 
         final Token name;
         final Expression value;
+
+        // FRAME SLOT WHEN THE TARGET IS A LOCAL OF A FRAME FUNCTION, ELSE -1
+        int slot = -1;
+
+        // BOUND BY THE RESOLVER WHEN THE TARGET IS GLOBAL
+        Globals.Cell global;
     }
 
     static class CallExpression extends Expression {
@@ -108,6 +125,16 @@ abstract class Expression {
         final Expression callee;
         final Token paren;
         final List<Expression> arguments;
+
+        // BOUND BY THE RESOLVER WHEN THE CALLEE IS A CONSTANT GLOBAL FUNCTION
+        Globals.Cell direct;
+
+        // A RESOLVED COPY OF inlinedFrom'S BODY, RUN IN PLACE OF THE CALL
+        // WHILE direct STILL HOLDS THAT FUNCTION. SEE Inliner
+        List<Statement.Var> inlinedParameters;
+        Statement.Block inlined;
+        Expression inlinedResult;
+        Statement.Function inlinedFrom;
     }
 
     static class GetExpression extends Expression {
@@ -122,6 +149,25 @@ abstract class Expression {
 
         final Expression object;
         final Token name;
+
+        // SET WHEN THE VALUE CAN'T CHANGE WHILE A LOOP RUNS
+        Invariant invariant;
+    }
+
+    static class IndexExpression extends Expression {
+        IndexExpression(Expression object, Token bracket, Expression index) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexExpr(this);
+        }
+
+        final Expression object;
+        final Token bracket;
+        final Expression index;
     }
 
     static class LogicalExpression extends Expression {
@@ -156,6 +202,24 @@ abstract class Expression {
         final Expression value;
     }
 
+    static class SetIndexExpression extends Expression {
+        SetIndexExpression(Expression object, Token bracket, Expression index, Expression value) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSetIndexExpr(this);
+        }
+
+        final Expression object;
+        final Token bracket;
+        final Expression index;
+        final Expression value;
+    }
+
     static class SuperExpression extends Expression {
         SuperExpression(Token keyword, Token method) {
             this.keyword = keyword;
@@ -168,6 +232,11 @@ abstract class Expression {
 
         final Token keyword;
         final Token method;
+
+        // THE METHOD super.method NAMES FOR superclass, FILLED IN WHEN THE
+        // CLASS IS DEFINED AND AGAIN IF IT IS REDEFINED WITH ANOTHER SUPERCLASS
+        PklClass superclass;
+        PklFunction target;
     }
 
     static class ThisExpression extends Expression {
@@ -192,7 +261,27 @@ abstract class Expression {
         }
 
         final Token name;
+
+        // FRAME SLOT WHEN THIS IS A LOCAL OF A FRAME FUNCTION, ELSE -1
+        int slot = -1;
+
+        // BOUND BY THE RESOLVER WHEN THIS IS A GLOBAL
+        Globals.Cell global;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
+
+    // THE VALUE OF A LOOP INVARIANT EXPRESSION, SHARED BY EVERY COPY OF IT
+    // IN THE LOOP AND CLEARED EACH TIME THE LOOP STARTS. SEE Hoister
+
+    static final class Invariant {
+        Object value;
+
+        // ONLY IMMUTABLE VALUES, A NEW LIST OR BOUND METHOD EACH TIME IS VISIBLE
+        void hold(Object value) {
+            if (value instanceof Number || value instanceof String || value instanceof Boolean) {
+                this.value = value;
+            }
+        }
+    }
 }
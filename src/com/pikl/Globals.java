@@ -0,0 +1,130 @@
+package com.pikl;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+
+    THE GLOBAL ENVIRONMENT. EACH NAME HAS ONE Cell FOR THE LIFE OF THE
+    INTERPRETER, AND THE RESOLVER BINDS EVERY GLOBAL REFERENCE TO ITS CELL,
+    SO READING A GLOBAL IS A FIELD LOAD INSTEAD OF A WALK UP THE
+    ENVIRONMENT CHAIN AND SEVERAL HASH LOOKUPS. REDEFINING A NAME UPDATES
+    THE CELL IN PLACE
+
+    A CELL CAN EXIST BEFORE ITS NAME IS DEFINED (A FUNCTION CAN REFER TO A
+    GLOBAL DECLARED AFTER IT), SO ANYTHING OTHER THAN A PLAIN VALUE TAKES
+    THE SLOW PATH, WHICH REPORTS UNDEFINED AND UNINITIALISED VARIABLES AND
+    RUNS IMPORTED MODULES
+
+ */
+
+class Globals extends Environment {
+
+    static final class Cell {
+        final String name;
+        Object value;
+        boolean defined = false;
+
+        // SET WHEN THE WHOLE PROGRAM DEFINES THIS NAME ONCE, AS THIS
+        // FUNCTION, AND NEVER ASSIGNS IT. CLEARED IF A MODULE OR A LAZY
+        // BODY RESOLVED LATER REDECLARES OR ASSIGNS IT
+        Statement.Function constant;
+
+        Cell(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Map<String, Cell> cells = new HashMap<>();
+
+    Cell cell(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null) {
+            cell = new Cell(name);
+            cells.put(name, cell);
+        }
+        return cell;
+    }
+
+    // THE FAST PATHS FOR BOUND REFERENCES
+
+    Object read(Cell cell, Token name) {
+        Object value = cell.value;
+        if (value != null && !(value instanceof ModuleLoader.Module)) return value;
+        return get(name);
+    }
+
+    void write(Cell cell, Token name, Object value) {
+        if (!cell.defined || cell.value instanceof ModuleLoader.Module) {
+            assign(name, value);
+            return;
+        }
+        cell.value = value;
+    }
+
+    @Override
+    Map<String, Object> values() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Cell cell : cells.values()) {
+            if (cell.defined) values.put(cell.name, cell.value);
+        }
+        return values;
+    }
+
+    @Override
+    void define(String name, Object value) {
+        Cell cell = cell(name);
+        cell.value = value;
+        cell.defined = true;
+    }
+
+    @Override
+    void assignAt(int distance, Token name, Object value) {
+        define(name.lexeme, value);
+    }
+
+    @Override
+    Object getAt(int distance, String name) {
+        Cell cell = cells.get(name);
+        return cell == null ? null : cell.value;
+    }
+
+    @Override
+    Object get(Token name) {
+        Cell cell = cells.get(name.lexeme);
+
+        if (cell == null || !cell.defined) {
+            throw new RuntimeError(name,
+                    "Undefined variable '" + name.lexeme + "'.");
+        }
+
+        Object value = cell.value;
+
+        // IMPORTED BUT THE MODULE HASN'T RUN YET
+        if (value instanceof ModuleLoader.Module)
+            value = ((ModuleLoader.Module)value).force(name);
+
+        if (value != null)
+            return value;
+
+        // VARIABLE NOT INITIALISED
+        throw new RuntimeError(name,
+                "Uninitialised variable '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void assign(Token name, Object value) {
+        Cell cell = cells.get(name.lexeme);
+
+        if (cell == null || !cell.defined) {
+            throw new RuntimeError(name,
+                    "Undefined variable '" + name.lexeme + "'.");
+        }
+
+        if (cell.value instanceof ModuleLoader.Module)
+            ((ModuleLoader.Module)cell.value).force(name);
+
+        cell.value = value;
+    }
+}
@@ -0,0 +1,300 @@
+package com.pikl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+
+    FINDS THE LOOP INVARIANT EXPRESSIONS IN A RESOLVED while LOOP
+
+    A LOOP WHOSE CONDITION AND BODY MAKE NO CALLS CAN'T RUN ANY CODE BUT
+    ITS OWN, SO A VARIABLE IT NEVER ASSIGNS OR DECLARES KEEPS ITS VALUE
+    FOR AS LONG AS THE LOOP RUNS, AND SO DOES A FIELD IF THE LOOP SETS NO
+    FIELDS. AN ARITHMETIC, COMPARISON OR PROPERTY EXPRESSION BUILT ONLY
+    FROM THOSE AND LITERALS IS GIVEN AN Invariant: THE INTERPRETER WORKS IT
+    OUT THE FIRST TIME THE LOOP NEEDS IT AND THEN REUSES THE VALUE UNTIL
+    THE LOOP IS ENTERED AGAIN. COPIES OF THE SAME EXPRESSION IN ONE LOOP
+    SHARE AN Invariant, SO IT IS WORKED OUT ONCE FOR ALL OF THEM
+
+    VALUES ARE ONLY WORKED OUT WHEN THEY WOULD HAVE BEEN ANYWAY, SO AN
+    EXPRESSION THAT FAILS STILL FAILS WHERE IT DID. LOOPS ARE RESOLVED
+    INNERMOST FIRST, AN OUTER LOOP TAKES OVER THE EXPRESSIONS THAT ARE
+    INVARIANT IN IT TOO
+
+ */
+
+class Hoister implements Expression.Visitor<Hoister.Key>, Statement.Visitor<Void> {
+
+    // WHAT AN INVARIANT EXPRESSION COMPUTES: THE KIND OF NODE, ITS OPERATOR,
+    // NAME OR LITERAL VALUE, AND THE KEYS OF ITS OPERANDS. EQUAL FOR EQUAL
+    // EXPRESSIONS ONLY, LITERALS MUST MATCH IN TYPE AS WELL AS VALUE
+    static final class Key {
+        final String kind;
+        final Object value;
+        final Key[] parts;
+        private final int hash;
+
+        Key(String kind, Object value, Key... parts) {
+            this.kind = kind;
+            this.value = value;
+            this.parts = parts;
+            this.hash = Objects.hash(kind, value == null ? null : value.getClass(), value, Arrays.hashCode(parts));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Key)) return false;
+
+            Key key = (Key)other;
+            return hash == key.hash && kind.equals(key.kind) &&
+                    (value == null ? key.value == null :
+                            key.value != null && value.getClass() == key.value.getClass() && value.equals(key.value)) &&
+                    Arrays.equals(parts, key.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    // GLOBALS ONLY COUNT AS INVARIANT WITHOUT MODULES, READING AN IMPORTED
+    // NAME CAN RUN THE MODULE
+    private final boolean globals;
+
+    // FIRST PASS: WHAT THE LOOP CHANGES
+    private boolean scanning = true;
+    private final Set<String> changed = new HashSet<>();
+    private boolean calls = false;
+    private boolean sets = false;
+
+    // SECOND PASS: ONE Invariant PER DISTINCT EXPRESSION
+    private final Map<Key, Expression.Invariant> invariants = new HashMap<>();
+
+    Hoister(boolean globals) {
+        this.globals = globals;
+    }
+
+    void loop(Statement.While stmt) {
+        stmt.accept(this);
+        if (calls) return;
+
+        scanning = false;
+        root(stmt.condition);
+        stmt.body.accept(this);
+
+        if (!invariants.isEmpty()) stmt.invariants = new ArrayList<>(invariants.values());
+    }
+
+    // AN EXPRESSION WHOSE VALUE IS USED DIRECTLY BY A STATEMENT
+
+    private void root(Expression expr) {
+        hoist(expr, expr.accept(this));
+    }
+
+    // key IS null IF expr VARIES, ELSE A Key THAT IS EQUAL FOR EQUAL
+    // EXPRESSIONS. ONLY THE LARGEST INVARIANT EXPRESSIONS ARE
+    // HOISTED, THEIR PARTS ARE ONLY WORKED OUT WITH THEM
+
+    private void hoist(Expression expr, Key key) {
+        if (scanning || key == null) return;
+
+        while (expr instanceof Expression.GroupExpression) {
+            expr = ((Expression.GroupExpression)expr)._left;
+        }
+
+        if (expr instanceof Expression.UnaryExpression) {
+            Expression operand = ((Expression.UnaryExpression)expr)._left;
+            hoist(operand, operand.accept(this));
+        } else if (expr instanceof Expression.BinaryExpression) {
+            ((Expression.BinaryExpression)expr).invariant = invariant(key);
+        } else if (expr instanceof Expression.GetExpression) {
+            ((Expression.GetExpression)expr).invariant = invariant(key);
+        }
+    }
+
+    private Expression.Invariant invariant(Key key) {
+        Expression.Invariant invariant = invariants.get(key);
+        if (invariant == null) {
+            invariant = new Expression.Invariant();
+            invariants.put(key, invariant);
+        }
+        return invariant;
+    }
+
+    // EXPRESSIONS
+
+    @Override
+    public Key visitAssignExpr(Expression.AssignExpression expr) {
+        if (scanning) changed.add(expr.name.lexeme);
+        root(expr.value);
+        return null;
+    }
+
+    @Override
+    public Key visitBinaryExpr(Expression.BinaryExpression expr) {
+        Key left = expr._left.accept(this);
+        Key right = expr._right.accept(this);
+        if (left != null && right != null) return new Key("binary", expr._type.lexeme, left, right);
+
+        hoist(expr._left, left);
+        hoist(expr._right, right);
+        return null;
+    }
+
+    @Override
+    public Key visitCallExpr(Expression.CallExpression expr) {
+        calls = true;
+        return null;
+    }
+
+    @Override
+    public Key visitGetExpr(Expression.GetExpression expr) {
+        Key object = expr.object.accept(this);
+        if (object != null && !sets) return new Key("get", expr.name.lexeme, object);
+
+        hoist(expr.object, object);
+        return null;
+    }
+
+    @Override
+    public Key visitGroupingExpr(Expression.GroupExpression expr) {
+        return expr._left.accept(this);
+    }
+
+    @Override
+    public Key visitIndexExpr(Expression.IndexExpression expr) {
+        root(expr.object);
+        root(expr.index);
+        return null;
+    }
+
+    @Override
+    public Key visitLiteralExpr(Expression.LiteralExpression expr) {
+        return new Key("literal", expr.value);
+    }
+
+    @Override
+    public Key visitLogicalExpr(Expression.LogicalExpression expr) {
+        root(expr.left);
+        root(expr.right);
+        return null;
+    }
+
+    @Override
+    public Key visitSetExpr(Expression.SetExpression expr) {
+        sets = true;
+        root(expr.object);
+        root(expr.value);
+        return null;
+    }
+
+    @Override
+    public Key visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        root(expr.object);
+        root(expr.index);
+        root(expr.value);
+        return null;
+    }
+
+    @Override
+    public Key visitSuperExpr(Expression.SuperExpression expr) {
+        return null;
+    }
+
+    @Override
+    public Key visitThisExpr(Expression.ThisExpression expr) {
+        return new Key("this", null);
+    }
+
+    @Override
+    public Key visitUnaryExpr(Expression.UnaryExpression expr) {
+        Key operand = expr._left.accept(this);
+        if (operand != null) return new Key("unary", expr._type.lexeme, operand);
+
+        return null;
+    }
+
+    @Override
+    public Key visitVariableExpr(Expression.VariableExpression expr) {
+        if (scanning || changed.contains(expr.name.lexeme)) return null;
+        if (expr.global != null && !globals) return null;
+        return new Key("variable", expr.name.lexeme);
+    }
+
+    // STATEMENTS
+
+    @Override
+    public Void visitBlockStmt(Statement.Block stmt) {
+        for (Statement statement : stmt.statements) {
+            statement.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Statement.Class stmt) {
+        // ITS METHODS CAN'T RUN WITHOUT A CALL
+        if (scanning) changed.add(stmt.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Statement.Expression stmt) {
+        root(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Statement.Function stmt) {
+        if (scanning) changed.add(stmt.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Statement.If stmt) {
+        root(stmt.condition);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Statement.Import stmt) {
+        calls = true;
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Statement.Print stmt) {
+        root(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Statement.Return stmt) {
+        if (stmt.value != null) root(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Statement.Var stmt) {
+        if (scanning) changed.add(stmt.name.lexeme);
+        if (stmt.initializer != null) root(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Statement.While stmt) {
+        root(stmt.condition);
+        stmt.body.accept(this);
+        return null;
+    }
+}
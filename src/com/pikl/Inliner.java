@@ -0,0 +1,317 @@
+package com.pikl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    INLINES SMALL TOP LEVEL FUNCTIONS INTO THEIR CALL SITES
+
+    A FUNCTION IS INLINABLE WHEN ITS BODY IS A FEW STATEMENTS, OPTIONALLY
+    ENDING WITH return value;, WITH NO OTHER return, NO LOOP, NO NESTED fun
+    OR class AND NO CALL TO ITSELF. A CALL f(x, y) GETS A COPY OF THE BODY
+
+        var a#1; var b#1; { ...body... }   VALUE: value OR nil
+
+    WHICH THE RESOLVER THEN RESOLVES IN THE CALLER'S SCOPE. THE ARGUMENTS
+    ARE EVALUATED AS USUAL AND STORED IN THE RENAMED PARAMETERS. THE COPY'S
+    LOCALS ARE RENAMED SO THEY CAN'T CLASH WITH THE CALLER'S, AND ITS
+    GLOBALS ARE BOUND TO THEIR CELLS HERE SO A CALLER'S LOCAL OF THE SAME
+    NAME CAN'T CAPTURE THEM.
+
+    THE COPY IS KEPT NEXT TO THE ORIGINAL CALL. IT ONLY RUNS WHILE THE
+    CALL IS STATICALLY BOUND TO THE FUNCTION IT WAS COPIED FROM, SO A
+    REDEFINITION LATER FALLS BACK TO THE ORDINARY CALL
+
+ */
+
+class Inliner implements Expression.Visitor<Expression>, Statement.Visitor<Statement> {
+
+    // LARGEST BODY, IN SYNTAX TREE NODES, WORTH COPYING
+    private static final int MAX_NODES = 40;
+
+    private static class NotInlinable extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotInlinable() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Globals globals;
+    private final Map<Statement.Function, Boolean> inlinable = new IdentityHashMap<>();
+    private int names = 0;
+
+    // STATE FOR THE COPY BEING MADE
+    private Statement.Function function;
+    private final List<Map<String, Token>> renames = new ArrayList<>();
+    private int nodes;
+
+    Inliner(Globals globals) {
+        this.globals = globals;
+    }
+
+    // COPY function'S BODY FOR call, OR RETURN FALSE IF IT CAN'T BE INLINED.
+    // ON SUCCESS call'S inlined FIELDS HOLD THE UNRESOLVED COPY
+
+    boolean inline(Statement.Function function, Expression.CallExpression call) {
+        if (function.body == null) return false;
+        if (call.arguments.size() != function.parameters.size()) return false;
+
+        if (inlinable.get(function) == Boolean.FALSE) return false;
+
+        this.function = function;
+        renames.clear();
+        renames.add(new HashMap<String, Token>());
+        nodes = 0;
+
+        try {
+            List<Statement.Var> parameters = new ArrayList<>();
+            for (Token parameter : function.parameters) {
+                parameters.add(new Statement.Var(rename(parameter), null));
+            }
+
+            List<Statement> statements = new ArrayList<>();
+
+            Expression result = null;
+            List<Statement> body = function.body;
+            for (int i = 0; i < body.size(); i++) {
+                Statement statement = body.get(i);
+                if (i == body.size() - 1 && statement instanceof Statement.Return) {
+                    Statement.Return ret = (Statement.Return)statement;
+                    if (ret.value != null) result = copy(ret.value);
+                } else {
+                    statements.add(copy(statement));
+                }
+            }
+
+            if (nodes > MAX_NODES) throw new NotInlinable();
+
+            inlinable.put(function, Boolean.TRUE);
+            call.inlinedParameters = parameters;
+            call.inlined = new Statement.Block(statements);
+            call.inlinedResult = result;
+            call.inlinedFrom = function;
+            return true;
+        } catch (NotInlinable e) {
+            inlinable.put(function, Boolean.FALSE);
+            return false;
+        } finally {
+            this.function = null;
+        }
+    }
+
+    private Token rename(Token name) {
+        Token renamed = new Token(TokenType.IDENTIFIER,
+                (name.lexeme + "#" + ++names).intern(), null, name.line);
+        renames.get(renames.size() - 1).put(name.lexeme, renamed);
+        return renamed;
+    }
+
+    private Token lookup(Token name) {
+        for (int i = renames.size() - 1; i >= 0; i--) {
+            Token renamed = renames.get(i).get(name.lexeme);
+            if (renamed != null) return renamed;
+        }
+        return null;
+    }
+
+    private Expression copy(Expression expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private Statement copy(Statement stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    private void count() {
+        if (++nodes > MAX_NODES) throw new NotInlinable();
+    }
+
+    // EXPRESSIONS
+
+    @Override
+    public Expression visitAssignExpr(Expression.AssignExpression expr) {
+        count();
+        Expression value = copy(expr.value);
+
+        Token renamed = lookup(expr.name);
+        if (renamed != null) return new Expression.AssignExpression(renamed, value);
+
+        Expression.AssignExpression global = new Expression.AssignExpression(expr.name, value);
+        global.global = globals.cell(expr.name.lexeme);
+        return global;
+    }
+
+    @Override
+    public Expression visitBinaryExpr(Expression.BinaryExpression expr) {
+        count();
+        return new Expression.BinaryExpression(copy(expr._left), copy(expr._right), expr._type);
+    }
+
+    @Override
+    public Expression visitCallExpr(Expression.CallExpression expr) {
+        count();
+        if (expr.callee instanceof Expression.VariableExpression &&
+                ((Expression.VariableExpression)expr.callee).name.lexeme.equals(function.name.lexeme) &&
+                lookup(((Expression.VariableExpression)expr.callee).name) == null) {
+            // RECURSIVE
+            throw new NotInlinable();
+        }
+
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : expr.arguments) {
+            arguments.add(copy(argument));
+        }
+        return new Expression.CallExpression(copy(expr.callee), expr.paren, arguments);
+    }
+
+    @Override
+    public Expression visitGetExpr(Expression.GetExpression expr) {
+        count();
+        return new Expression.GetExpression(copy(expr.object), expr.name);
+    }
+
+    @Override
+    public Expression visitGroupingExpr(Expression.GroupExpression expr) {
+        count();
+        return new Expression.GroupExpression(copy(expr._left));
+    }
+
+    @Override
+    public Expression visitIndexExpr(Expression.IndexExpression expr) {
+        count();
+        return new Expression.IndexExpression(copy(expr.object), expr.bracket, copy(expr.index));
+    }
+
+    @Override
+    public Expression visitLiteralExpr(Expression.LiteralExpression expr) {
+        count();
+        return new Expression.LiteralExpression(expr.value);
+    }
+
+    @Override
+    public Expression visitLogicalExpr(Expression.LogicalExpression expr) {
+        count();
+        return new Expression.LogicalExpression(copy(expr.left), expr.operator, copy(expr.right));
+    }
+
+    @Override
+    public Expression visitSetExpr(Expression.SetExpression expr) {
+        count();
+        return new Expression.SetExpression(copy(expr.object), expr.name, copy(expr.value));
+    }
+
+    @Override
+    public Expression visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        count();
+        return new Expression.SetIndexExpression(copy(expr.object), expr.bracket,
+                copy(expr.index), copy(expr.value));
+    }
+
+    @Override
+    public Expression visitSuperExpr(Expression.SuperExpression expr) {
+        throw new NotInlinable();
+    }
+
+    @Override
+    public Expression visitThisExpr(Expression.ThisExpression expr) {
+        throw new NotInlinable();
+    }
+
+    @Override
+    public Expression visitUnaryExpr(Expression.UnaryExpression expr) {
+        count();
+        return new Expression.UnaryExpression(copy(expr._left), expr._type);
+    }
+
+    @Override
+    public Expression visitVariableExpr(Expression.VariableExpression expr) {
+        count();
+
+        Token renamed = lookup(expr.name);
+        if (renamed != null) return new Expression.VariableExpression(renamed);
+
+        Expression.VariableExpression global = new Expression.VariableExpression(expr.name);
+        global.global = globals.cell(expr.name.lexeme);
+        return global;
+    }
+
+    // STATEMENTS
+
+    @Override
+    public Statement visitBlockStmt(Statement.Block stmt) {
+        count();
+        renames.add(new HashMap<String, Token>());
+        try {
+            List<Statement> statements = new ArrayList<>();
+            for (Statement statement : stmt.statements) {
+                statements.add(copy(statement));
+            }
+            return new Statement.Block(statements);
+        } finally {
+            renames.remove(renames.size() - 1);
+        }
+    }
+
+    @Override
+    public Statement visitClassStmt(Statement.Class stmt) {
+        throw new NotInlinable();
+    }
+
+    @Override
+    public Statement visitExpressionStmt(Statement.Expression stmt) {
+        count();
+        return new Statement.Expression(copy(stmt.expression));
+    }
+
+    @Override
+    public Statement visitFunctionStmt(Statement.Function stmt) {
+        throw new NotInlinable();
+    }
+
+    @Override
+    public Statement visitIfStmt(Statement.If stmt) {
+        count();
+        return new Statement.If(copy(stmt.condition), copy(stmt.thenBranch), copy(stmt.elseBranch));
+    }
+
+    @Override
+    public Statement visitImportStmt(Statement.Import stmt) {
+        throw new NotInlinable();
+    }
+
+    @Override
+    public Statement visitPrintStmt(Statement.Print stmt) {
+        count();
+        return new Statement.Print(copy(stmt.expression));
+    }
+
+    @Override
+    public Statement visitReturnStmt(Statement.Return stmt) {
+        // ONLY A FINAL return IS SUPPORTED
+        throw new NotInlinable();
+    }
+
+    @Override
+    public Statement visitVarStmt(Statement.Var stmt) {
+        count();
+
+        // LEAVE A REDECLARATION FOR THE FUNCTION'S OWN RESOLVE TO REPORT
+        if (renames.get(renames.size() - 1).containsKey(stmt.name.lexeme)) throw new NotInlinable();
+
+        // THE INITIALIZER CAN'T SEE THE NEW NAME
+        Expression initializer = copy(stmt.initializer);
+        return new Statement.Var(rename(stmt.name), initializer);
+    }
+
+    @Override
+    public Statement visitWhileStmt(Statement.While stmt) {
+        // A LOOP ALREADY OUTWEIGHS THE CALL, AND RUNS FASTER IN THE
+        // FUNCTION'S OWN FRAME THAN IN A COPY AT TOP LEVEL
+        throw new NotInlinable();
+    }
+}
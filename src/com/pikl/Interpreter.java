@@ -1,16 +1,42 @@
 package com.pikl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class Interpreter implements Expression.Visitor<Object>, Statement.Visitor<Void> {
 
-    final Environment globals = new Environment();
+    final Globals globals = new Globals();
     private Environment environment = globals;
     private final Map<Expression, Integer> locals = new HashMap<>();
 
+    // SET WHEN FUNCTIONS SHOULD RUN ON THE REGISTER VM
+    RegisterVM vm = null;
+
+    // SET WHEN HOT FUNCTIONS SHOULD BE COMPILED TO JVM BYTECODE
+    JitCompiler jit = null;
+
+    // SET BY --lazy, PASSED TO EVERY Parser OF A PROGRAM OR MODULE
+    boolean lazy = false;
+
+    // THE NATIVES DEFINED BELOW, BY NAME
+    final Map<String, Object> builtins = new HashMap<>();
+
+    // FRAME STACK. FUNCTIONS THAT DECLARE NO CLOSURES KEEP THEIR LOCALS
+    // IN stack[fp ..] INSTEAD OF AN Environment, ARGUMENTS ARE PUSHED AT
+    // sp AND BECOME THE FIRST SLOTS OF THE CALLEE'S FRAME
+    Object[] stack = new Object[256];
+    int fp = 0;
+    int sp = 0;
+
+    // MODULES BROUGHT IN BY import
+    final ModuleLoader modules = new ModuleLoader(this);
+
+    // FUNCTION WHOSE BODY THE TREE WALKER IS RUNNING, FOR LOOP HOTNESS
+    Statement.Function currentFunction = null;
+
     void executeBlock(List<Statement> statements, Environment environment) {
         Environment previous = this.environment;
         try {
@@ -37,8 +63,37 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         locals.put(expr, depth);
     }
 
+    Integer depthOf(Expression expr) {
+        return locals.get(expr);
+    }
+
+    void reserve(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        }
+    }
+
+    void useRegisterVM() {
+        vm = new RegisterVM(this);
+    }
+
+    void useJit() {
+        jit = new JitCompiler(this);
+    }
+
+    void useLazyParsing() {
+        lazy = true;
+    }
+
     @Override
     public Void visitBlockStmt(Statement.Block stmt) {
+        if (stmt.flat) {
+            for (Statement statement : stmt.statements) {
+                execute(statement);
+            }
+            return null;
+        }
+
         executeBlock(stmt.statements, new Environment(environment));
         return null;
     }
@@ -71,6 +126,12 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
         PklClass klass = new PklClass(stmt.name.lexeme, (PklClass)superclass, methods);
 
+        // THE SUPERCLASS IS FIXED NOW, SO RESOLVE EVERY super.method AGAINST IT
+        for (Expression.SuperExpression expr : stmt.supers) {
+            expr.superclass = (PklClass)superclass;
+            expr.target = expr.superclass.lookup(expr.method.lexeme);
+        }
+
         if (superclass != null) {
             environment = environment.enclosing;
         }
@@ -94,7 +155,7 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Void visitIfStmt(Statement.If stmt) {
-        if (isTruth(evaluate(stmt.condition))) {
+        if (Operators.isTruth(evaluate(stmt.condition))) {
             execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
             execute(stmt.elseBranch);
@@ -102,10 +163,16 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Statement.Import stmt) {
+        modules.load(stmt);
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Statement.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        System.out.println(Operators.stringify(value));
         return null;
     }
 
@@ -124,21 +191,76 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
             value = evaluate(stmt.initializer);
         }
 
+        if (stmt.slot >= 0) {
+            stack[fp + stmt.slot] = value;
+            return null;
+        }
+
         environment.define(stmt.name.lexeme, value);
         return null;
     }
 
     @Override
     public Void visitWhileStmt(Statement.While stmt) {
-        while (isTruth(evaluate(stmt.condition))) {
+        if (stmt.invariants != null) {
+            for (Expression.Invariant invariant : stmt.invariants) {
+                invariant.value = null;
+            }
+        }
+
+        if (stmt.counted != null && countedLoop(stmt.counted)) return null;
+
+        while (Operators.isTruth(evaluate(stmt.condition))) {
             execute(stmt.body);
+            if (jit != null && currentFunction != null) jit.backEdge(currentFunction);
         }
         return null;
     }
 
+    // RUN A COUNTED LOOP WITH AN int COUNTER, WRITING IT TO THE VARIABLE FOR THE
+    // BODY. RETURNS FALSE, WITH THE VARIABLE UP TO DATE, WHEN THE COUNTER OR
+    // LIMIT STOPS BEING AN INTEGER SO THE GENERIC LOOP CAN CARRY ON
+
+    private boolean countedLoop(Statement.While.Counted loop) {
+        Object start = evaluate(loop.variable);
+        if (!(start instanceof Integer)) return false;
+
+        int i = (Integer)start;
+        while (true) {
+            Object limit = evaluate(loop.limit);
+            if (!(limit instanceof Integer)) return false;
+
+            int n = (Integer)limit;
+            if (loop.inclusive ? i > n : i >= n) return true;
+
+            execute(loop.body);
+            if (jit != null && currentFunction != null) jit.backEdge(currentFunction);
+
+            if (i == Integer.MAX_VALUE) {
+                evaluate(loop.increment);
+                return false;
+            }
+            assign(loop.increment, ++i);
+        }
+    }
+
     @Override
     public Object visitAssignExpr(Expression.AssignExpression expr) {
         Object value = evaluate(expr.value);
+        assign(expr, value);
+        return value;
+    }
+
+    private void assign(Expression.AssignExpression expr, Object value) {
+        if (expr.slot >= 0) {
+            stack[fp + expr.slot] = value;
+            return;
+        }
+
+        if (expr.global != null) {
+            globals.write(expr.global, expr.name, value);
+            return;
+        }
 
         Integer distance = locals.get(expr);
         if (distance != null) {
@@ -146,159 +268,178 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         } else {
             globals.assign(expr.name, value);
         }
-
-        return value;
     }
 
     @Override
     public Object visitBinaryExpr(Expression.BinaryExpression expr) {
+        Expression.Invariant invariant = expr.invariant;
+        if (invariant == null) return binary(expr);
 
-        Object left = evaluate(expr._left);
-        Object right = evaluate(expr._right);
-
-        switch (expr._type.type) {
-
-            case BANG_EQUAL:
-                return !isEqual(left, right);
-
-            case EQUAL_EQUAL:
-                return isEqual(left, right);
-
-            case GREATER:
-
-                checkNumberOperands(expr._type, left, right);
-
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int)left > (int)right;
-                }
-
-                return (double)left > (double)right;
-
-            case GREATER_EQUAL:
-
-                checkNumberOperands(expr._type, left, right);
-
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int)left >= (int)right;
-                }
+        Object value = invariant.value;
+        if (value == null) {
+            value = binary(expr);
+            invariant.hold(value);
+        }
+        return value;
+    }
 
-                return (double)left >= (double)right;
+    private Object binary(Expression.BinaryExpression expr) {
+        if (expr.operands == Typer.Type.DOUBLE) return doubles(expr);
 
-            case LESS:
+        Object left = evaluate(expr._left);
+        Object right = evaluate(expr._right);
 
-                checkNumberOperands(expr._type, left, right);
+        if (expr.operands == Typer.Type.STRING) return left.toString() + right.toString();
 
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int)left < (int)right;
-                }
+        switch (expr._type.type) {
+            case BANG_EQUAL: return !Operators.isEqual(left, right);
+            case EQUAL_EQUAL: return Operators.isEqual(left, right);
+            case GREATER: return Operators.greater(expr._type, left, right);
+            case GREATER_EQUAL: return Operators.greaterEqual(expr._type, left, right);
+            case LESS: return Operators.less(expr._type, left, right);
+            case LESS_EQUAL: return Operators.lessEqual(expr._type, left, right);
+            case MINUS: return Operators.subtract(expr._type, left, right);
+            case PLUS: return Operators.add(expr._type, left, right);
+            case SLASH: return Operators.divide(expr._type, left, right);
+            case STAR: return Operators.multiply(expr._type, left, right);
+        }
 
-                return (double)left < (double)right;
+        return null;
+    }
 
-            case LESS_EQUAL:
+    // BOTH OPERANDS ARE ALWAYS Doubles, SEE Typer
 
-                checkNumberOperands(expr._type, left, right);
+    private Object doubles(Expression.BinaryExpression expr) {
+        double left = (Double)evaluate(expr._left);
+        double right = (Double)evaluate(expr._right);
 
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int)left <= (int)right;
-                }
+        switch (expr._type.type) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            case LESS_EQUAL: return left <= right;
+            case MINUS: return left - right;
+            case PLUS: return left + right;
+            case SLASH:
+                if (right == 0.0) throw new RuntimeError(expr._type, "Divide by zero error.");
+                return left / right;
+            case STAR: return left * right;
+        }
 
-                return (double)left <= (double)right;
+        return null;
+    }
 
-            case MINUS:
+    @Override
+    public Object visitCallExpr(Expression.CallExpression expr) {
 
-                checkNumberOperands(expr._type, left, right);
+        // STATICALLY BOUND, THE RESOLVER HAS ALREADY CHECKED THE ARGUMENT COUNT
+        Globals.Cell direct = expr.direct;
+        if (direct != null && direct.constant != null && direct.value != null) {
+            if (direct.constant == expr.inlinedFrom) return inline(expr);
 
-                // CHECK IF BOTH ARE INTEGER VALUES
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int)left - (int)right;
-                }
+            PklFunction function = (PklFunction)direct.value;
+            if (function.declaration.frameSize >= 0 && vm == null && jit == null) {
+                return callFrame(function, expr);
+            }
 
-                // OTHERWISE CAST BOTH TO DOUBLE
+            List<Object> arguments = new ArrayList<>(expr.arguments.size());
+            for (Expression argument : expr.arguments) {
+                arguments.add(evaluate(argument));
+            }
+            return function.call(this, arguments);
+        }
 
-                return (double)left - (double)right;
+        Object callee = evaluate(expr.callee);
 
-            case PLUS:
+        if (callee instanceof PklFunction && vm == null && jit == null) {
+            PklFunction function = (PklFunction)callee;
+            if (function.declaration.frameSize >= 0 && function.arity() == expr.arguments.size()) {
+                return callFrame(function, expr);
+            }
+        }
 
-                // IF THEY AREN'T NUMERICAL THEY SHOULD BE STRINGS
-                if (left instanceof String || right instanceof String) {
-                    return left.toString() + right.toString();
-                }
+        List<Object> arguments = new ArrayList<>();
+        for (Expression argument : expr.arguments) {
+            arguments.add(evaluate(argument));
+        }
 
-                checkNumberOperands(expr._type, left, right);
+        return Operators.call(this, expr.paren, callee, arguments);
+    }
 
+    // RUN THE INLINED COPY OF THE CALLEE. THE ARGUMENTS ARE EVALUATED
+    // ONTO THE STACK FIRST, AN ARGUMENT'S OWN INLINED CALL CAN SHARE THE
+    // PARAMETERS' SLOTS
 
-                // CHECK IF BOTH ARE INTEGER VALUES
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int)left + (int)right;
-                }
-
-                // MAKE SURE THESE ARE BOTH AT LEAST NUMERICAL AND CAST TO DOUBLE
+    private Object inline(Expression.CallExpression expr) {
+        int base = sp;
+        Environment previous = environment;
+        try {
+            for (Expression argument : expr.arguments) {
+                Object value = evaluate(argument);
+                reserve(sp + 1);
+                stack[sp++] = value;
+            }
 
-               // if ((left instanceof Double || left instanceof Integer) && ((right instanceof Double) || right instanceof Integer)) {
+            Statement.Block block = expr.inlined;
+            if (!block.flat) environment = new Environment(environment);
 
-                if ((left instanceof Double && right instanceof Double)) {
-                    return (double)left + (double)right;
+            List<Statement.Var> parameters = expr.inlinedParameters;
+            for (int i = 0; i < parameters.size(); i++) {
+                Statement.Var parameter = parameters.get(i);
+                if (parameter.slot >= 0) {
+                    stack[fp + parameter.slot] = stack[base + i];
+                } else {
+                    environment.define(parameter.name.lexeme, stack[base + i]);
                 }
+                stack[base + i] = null;
+            }
+            sp = base;
 
-                // ANYTHING ELSE IS AN ERROR
-                throw new RuntimeError(expr._type,
-                        "Operands must be two numbers or two strings.");
-
-            case SLASH:
-
-                checkNumberOperands(expr._type, left, right);
-
-                if (left instanceof Double && right instanceof Double)
-                    return (double)left / (double)right;
-
-                return (int)left / (int)right;
-
-            case STAR:
-
-                checkNumberOperands(expr._type, left, right);
-
-                if (left instanceof Double && right instanceof Double)
-                    return (double)left * (double)right;
-
-                return (int)left * (int)right;
+            for (Statement statement : block.statements) {
+                execute(statement);
+            }
+            return expr.inlinedResult == null ? null : evaluate(expr.inlinedResult);
+        } finally {
+            Arrays.fill(stack, base, sp, null);
+            sp = base;
+            environment = previous;
         }
-
-        return null;
     }
 
-    @Override
-    public Object visitCallExpr(Expression.CallExpression expr) {
-        Object callee = evaluate(expr.callee);
-
-        List<Object> arguments = new ArrayList<>();
-        for (Expression argument : expr.arguments) {
-            arguments.add(evaluate(argument));
-        }
-
-        if (!(callee instanceof Callable)) {
-            throw new RuntimeError(expr.paren,
-                    "Can only call functions and classes.");
-        }
+    // FRAME FUNCTIONS TAKE THEIR ARGUMENTS STRAIGHT OFF THE STACK, NOTHING IS ALLOCATED
 
-        Callable function = (Callable)callee;
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " +
-                    function.arity() + " arguments but got " +
-                    arguments.size() + ".");
+    private Object callFrame(PklFunction function, Expression.CallExpression expr) {
+        int base = sp;
+        try {
+            for (Expression argument : expr.arguments) {
+                Object value = evaluate(argument);
+                reserve(sp + 1);
+                stack[sp++] = value;
+            }
+        } catch (RuntimeException error) {
+            Arrays.fill(stack, base, sp, null);
+            sp = base;
+            throw error;
         }
 
-        return function.call(this, arguments);
+        Stats.functionCalls++;
+        return function.callFrame(this, base);
     }
 
     @Override
     public Object visitGetExpr(Expression.GetExpression expr) {
-        Object object = evaluate(expr.object);
-        if (object instanceof PklInstance) {
-            return ((PklInstance) object).get(expr.name);
-        }
+        Expression.Invariant invariant = expr.invariant;
+        if (invariant == null) return Operators.getProperty(expr.name, evaluate(expr.object));
 
-        throw new RuntimeError(expr.name,
-                "Only instances have properties.");
+        Object value = invariant.value;
+        if (value == null) {
+            Object object = evaluate(expr.object);
+            value = Operators.getProperty(expr.name, object);
+
+            // A NATIVE OBJECT'S PROPERTIES CAN CHANGE WITHOUT A SET
+            if (object instanceof PklInstance) invariant.hold(value);
+        }
+        return value;
     }
 
     @Override
@@ -306,6 +447,14 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         return evaluate(expr._left);
     }
 
+    @Override
+    public Object visitIndexExpr(Expression.IndexExpression expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        return Operators.getIndex(expr.bracket, object, index);
+    }
+
     @Override
     public Object visitLiteralExpr(Expression.LiteralExpression expr) {
         return expr.value;
@@ -316,9 +465,9 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         Object left = evaluate(expr.left);
 
         if (expr.operator.type == TokenType.OR) {
-            if (isTruth(left)) return left;
+            if (Operators.isTruth(left)) return left;
         } else {
-            if (!isTruth(left)) return left;
+            if (!Operators.isTruth(left)) return left;
         }
 
         return evaluate(expr.right);
@@ -337,6 +486,20 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         return value;
     }
 
+    @Override
+    public Object visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        if (!(object instanceof NativeObject)) {
+            throw new RuntimeError(expr.bracket, "Only lists and maps can be indexed.");
+        }
+
+        Object value = evaluate(expr.value);
+        ((NativeObject) object).setIndex(expr.bracket, index, value);
+        return value;
+    }
+
     @Override
     public Object visitSuperExpr(Expression.SuperExpression expr) {
         int distance = locals.get(expr);
@@ -346,15 +509,17 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         PklInstance object = (PklInstance)environment.getAt(
                 distance - 1, "this");
 
-        PklFunction method = superclass.findMethod(
-                object, expr.method.lexeme);
+        if (expr.superclass != superclass) {
+            expr.superclass = superclass;
+            expr.target = superclass.lookup(expr.method.lexeme);
+        }
 
-        if (method == null) {
+        if (expr.target == null) {
             throw new RuntimeError(expr.method,
                     "Undefined property '" + expr.method.lexeme + "'.");
         }
 
-        return method;
+        return expr.target.bind(object);
     }
 
     @Override
@@ -365,13 +530,13 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     @Override
     public Object visitUnaryExpr(Expression.UnaryExpression expr) {
         Object right = evaluate(expr._left);
+        if (expr.operand == Typer.Type.DOUBLE) return -(double)(Double)right;
 
         switch (expr._type.type) {
             case BANG:
-                return !isTruth(right);
+                return !Operators.isTruth(right);
             case MINUS:
-                checkNumberOperand(expr._type, right);
-                return -(double)right;
+                return Operators.negate(expr._type, right);
         }
 
         // Unreachable.
@@ -380,6 +545,8 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Object visitVariableExpr(Expression.VariableExpression expr) {
+        if (expr.slot >= 0) return stack[fp + expr.slot];
+        if (expr.global != null) return globals.read(expr.global, expr.name);
         return lookUpVariable(expr.name, expr);
     }
 
@@ -391,82 +558,10 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         return expr.accept(this);
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double || operand instanceof Integer) return;
-        throw new RuntimeError(operator, "Operand must be a number.");
-    }
-
-    private void checkNumberOperands(Token operator,
-                                     Object left, Object right) {
-
-        // allow implicit casts ?
-        if (left instanceof Double  && right instanceof Double) {
-            // make sure we're not dividing by 0
-            if (operator.type == TokenType.SLASH) {
-                if ((double)right == 0.0)
-                    throw new RuntimeError(operator, "Divide by zero error.");
-
-                return;
-            }
-            return;
-        }
-
-        // check for integer values first
-        if (left instanceof Integer && right instanceof Integer) {
-            // make sure we're not dividing by 0
-            if (operator.type == TokenType.SLASH) {
-                if ((int)right == 0)
-                    throw new RuntimeError(operator, "Divide by zero error.");
-
-                return;
-            }
-            return;
-        }
-
-        if ((left instanceof Double || left instanceof Integer) && (right instanceof Double || right instanceof Integer)) {
-            // make sure we're not dividing by 0
-            if (operator.type == TokenType.SLASH) {
-                if ((double)right == 0.0)
-                    throw new RuntimeError(operator, "Divide by zero error.");
-
-                return;
-            }
-            return;
-
-            //   throw new RuntimeError(operator, "Type mismatch.");
-        }
-
-        throw new RuntimeError(operator, "Operands must be numbers.");
-    }
-
-    private boolean isEqual(Object a, Object b) {
-        // nil is only equal to nil.
-        if (a == null && b == null)
-            return true;
-
-        if (a == null)
-            return false;
-
-        return a.equals(b);
-    }
-
-    private boolean isTruth(Object object) {
-
-        if (object == null)
-            return false;
-
-        if (object instanceof Boolean)
-            return (boolean)object;
-
-        return true;
-    }
-
-    private String stringify(Object object) {
-
-        if (object == null)
-            return "nil";
-
-        return object.toString();
+    private static int length(Object value) {
+        int length = NativeFunction.toInt(value, "Length");
+        if (length < 0) throw new RuntimeError(null, "Length must not be negative.");
+        return length;
     }
 
     private void execute(Statement stmt) {
@@ -508,5 +603,65 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
             @Override
             public String toString() { return "<native fn>"; }
         });
+
+        // COLLECTIONS
+
+        globals.define("List", new NativeFunction("List", 0,
+                (interpreter, arguments) -> PklList.empty()));
+
+        globals.define("IntArray", new NativeFunction("IntArray", 1,
+                (interpreter, arguments) -> PklList.intArray(length(arguments.get(0)))));
+
+        globals.define("DoubleArray", new NativeFunction("DoubleArray", 1,
+                (interpreter, arguments) -> PklList.doubleArray(length(arguments.get(0)))));
+
+        globals.define("Map", new NativeFunction("Map", 0,
+                (interpreter, arguments) -> new PklMap()));
+
+        // OFF HEAP BUFFERS
+
+        globals.define("Buffer", new NativeFunction("Buffer", 1,
+                (interpreter, arguments) -> PklBuffer.allocate(length(arguments.get(0)))));
+
+        globals.define("mapRead", new NativeFunction("mapRead", 1,
+                (interpreter, arguments) -> PklBuffer.mapRead(NativeFunction.toStr(arguments.get(0), "Path"))));
+
+        globals.define("mapWrite", new NativeFunction("mapWrite", 2,
+                (interpreter, arguments) -> PklBuffer.mapWrite(NativeFunction.toStr(arguments.get(0), "Path"),
+                        length(arguments.get(1)))));
+
+        // STREAMING FILE I/O
+
+        globals.define("openRead", new NativeFunction("openRead", 1,
+                (interpreter, arguments) -> PklFile.openRead(NativeFunction.toStr(arguments.get(0), "Path"))));
+
+        globals.define("openWrite", new NativeFunction("openWrite", 1,
+                (interpreter, arguments) -> PklFile.openWrite(NativeFunction.toStr(arguments.get(0), "Path"))));
+
+        globals.define("readLine", new NativeFunction("readLine", 1,
+                (interpreter, arguments) -> PklFile.check(arguments.get(0)).readLine()));
+
+        globals.define("readChunk", new NativeFunction("readChunk", 2,
+                (interpreter, arguments) -> PklFile.check(arguments.get(0))
+                        .readChunk(length(arguments.get(1)))));
+
+        globals.define("write", new NativeFunction("write", 2, (interpreter, arguments) -> {
+            PklFile.check(arguments.get(0)).write(Operators.stringify(arguments.get(1)));
+            return null;
+        }));
+
+        globals.define("writeLine", new NativeFunction("writeLine", 2, (interpreter, arguments) -> {
+            PklFile file = PklFile.check(arguments.get(0));
+            file.write(Operators.stringify(arguments.get(1)));
+            file.write("\n");
+            return null;
+        }));
+
+        globals.define("close", new NativeFunction("close", 1, (interpreter, arguments) -> {
+            PklFile.check(arguments.get(0)).close();
+            return null;
+        }));
+
+        builtins.putAll(globals.values());
     }
 }
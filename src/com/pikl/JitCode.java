@@ -0,0 +1,19 @@
+package com.pikl;
+
+/*
+
+    BASE CLASS OF THE JVM CLASSES THE JIT GENERATES, ONE PER HOT FUNCTION
+
+ */
+
+abstract class JitCode {
+
+    // THE CHUNK'S CONSTANT POOL, THE GENERATED CODE INDEXES INTO IT
+    final Object[] constants;
+
+    JitCode(Object[] constants) {
+        this.constants = constants;
+    }
+
+    abstract Object run(Interpreter interpreter, Environment closure, Object[] arguments);
+}
@@ -0,0 +1,447 @@
+package com.pikl;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+
+    SECOND TIER, TRANSLATES HOT FUNCTIONS TO JVM BYTECODE
+
+    EVERY FUNCTION STARTS ON THE TREE WALKER (OR THE REGISTER VM). CALLS
+    AND LOOP BACK EDGES BUMP ITS hotness, ONCE IT PASSES THRESHOLD THE
+    FUNCTION'S REGISTER VM CHUNK IS TRANSLATED ONE INSTRUCTION AT A TIME
+    INTO A JitCode SUBCLASS. VM REGISTERS BECOME JVM LOCALS SO HOTSPOT
+    CAN INLINE THE JitRuntime HELPERS AND ALLOCATE REGISTERS ITSELF.
+
+    THERE IS NO ON STACK REPLACEMENT, A FUNCTION THAT GETS HOT INSIDE A
+    LOOP SWITCHES TO THE COMPILED CODE ON ITS NEXT CALL
+
+    EVERY CALL AND INVOKE GOES THROUGH ITS OWN PklCallSite, HELD IN A
+    static final FIELD SO HOTSPOT CAN INLINE A MONOMORPHIC CALLEE
+
+    CALLS BETWEEN COMPILED FUNCTIONS NEST ON THE JAVA STACK. WITH THE
+    REGISTER VM, ONCE THEY ARE MAX_NESTING DEEP, FURTHER CALLS GET NO
+    COMPILED CODE AND CARRY ON IN THE VM'S LOOP, WHICH KEEPS ITS FRAMES
+    ON THE HEAP. SHALLOW RECURSION STAYS COMPILED AND DEEP RECURSION
+    DOESN'T OVERFLOW
+
+    LOCALS OF run:
+        0 this, 1 interpreter, 2 closure, 3 arguments, 4 constants
+        5 AND UP, ONE PER VM REGISTER
+
+ */
+
+class JitCompiler {
+
+    static final int THRESHOLD = 1000;
+    static final int MAX_NESTING = 256;
+
+    private static final String CODE = "com/pikl/JitCode";
+    private static final String RUNTIME = "com/pikl/JitRuntime";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+
+    private static final String O = "Ljava/lang/Object;";
+    private static final String INTERPRETER = "Lcom/pikl/Interpreter;";
+    private static final String ENVIRONMENT = "Lcom/pikl/Environment;";
+
+    private static final int FIRST_REGISTER = 5;
+
+    private static int classes = 0;
+
+    private final Interpreter interpreter;
+
+    // CALLS OF COMPILED CODE IN PROGRESS, SEE PklFunction
+    int nesting = 0;
+
+    // PER FUNCTION STATE
+    private String className;
+    private ClassEmitter emitter;
+    private ClassEmitter.Code jvm;
+    private Chunk chunk;
+    private List<Object> pool;
+    private List<PklCallSite> sites;
+
+    JitCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    // CALLED ON EVERY CALL, RETURNS THE COMPILED CODE ONCE THERE IS SOME
+
+    JitCode enter(Statement.Function function) {
+        if (nesting >= MAX_NESTING && interpreter.vm != null) return null;
+        if (function.jitCode != null) return function.jitCode;
+
+        if (++function.hotness >= THRESHOLD && !function.jitted) {
+            function.jitted = true;
+            function.jitCode = compile(function);
+        }
+        return function.jitCode;
+    }
+
+    void backEdge(Statement.Function function) {
+        function.hotness++;
+    }
+
+    private JitCode compile(Statement.Function function) {
+        if (!function.compiled) {
+            Resolver.complete(function);
+            function.compiled = true;
+            function.chunk = new RegisterCompiler(interpreter).compile(function);
+        }
+        if (function.chunk == null) return null;
+
+        chunk = function.chunk;
+
+        // TOO MANY REGISTERS FOR ONE BYTE LOCAL INDEXES
+        if (FIRST_REGISTER + chunk.registers > 255) return null;
+
+        className = "com/pikl/Jit_" + function.name.lexeme + "_" + classes++;
+        emitter = new ClassEmitter(className, CODE);
+        pool = new ArrayList<>(Arrays.asList(chunk.constants));
+        sites = new ArrayList<>();
+
+        constructor();
+        byte[] code = run();
+        if (code == null) return null;
+
+        emitter.method("run", "(" + INTERPRETER + ENVIRONMENT + "[" + O + ")" + O,
+                8, FIRST_REGISTER + chunk.registers, code);
+        if (!sites.isEmpty()) staticInitializer();
+
+        // THE STATIC INITIALIZER RUNS ON newInstance AND PICKS UP THE SITES
+        JitRuntime.linking = sites.toArray(new PklCallSite[0]);
+        try {
+            Class<?> type = MethodHandles.lookup().defineClass(emitter.toByteArray());
+            Stats.functionsCompiled++;
+            return (JitCode)type.getDeclaredConstructor(Object[].class)
+                    .newInstance((Object)pool.toArray());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // A BUG HERE SHOULDN'T STOP THE SCRIPT, KEEP THE LOWER TIER
+            return null;
+        } finally {
+            JitRuntime.linking = null;
+        }
+    }
+
+    private void constructor() {
+        ClassEmitter.Code init = new ClassEmitter.Code();
+        init.load(0);
+        init.load(1);
+        init.op2(ClassEmitter.INVOKESPECIAL,
+                emitter.methodRef(CODE, "<init>", "([" + O + ")V"));
+        init.op(ClassEmitter.RETURN);
+        emitter.method("<init>", "([" + O + ")V", 2, 2, init.toByteArray());
+    }
+
+    // siteN = JitRuntime.site(N), ONE FIELD PER CALL SITE
+
+    private void staticInitializer() {
+        ClassEmitter.Code clinit = new ClassEmitter.Code();
+        for (int i = 0; i < sites.size(); i++) {
+            clinit.pushInt(emitter, i);
+            clinit.op2(ClassEmitter.INVOKESTATIC,
+                    emitter.methodRef(RUNTIME, "site", "(I)L" + METHOD_HANDLE + ";"));
+            clinit.op2(ClassEmitter.PUTSTATIC,
+                    emitter.fieldRef(className, "site" + i, "L" + METHOD_HANDLE + ";"));
+        }
+        clinit.op(ClassEmitter.RETURN);
+        emitter.staticInitializer(1, clinit.toByteArray());
+    }
+
+    private byte[] run() {
+        jvm = new ClassEmitter.Code();
+        int[] code = chunk.code;
+
+        // ARGUMENTS INTO THEIR REGISTERS, EVERYTHING ELSE STARTS AS nil
+        jvm.load(0);
+        jvm.op2(ClassEmitter.GETFIELD, emitter.fieldRef(CODE, "constants", "[" + O));
+        jvm.store(4);
+
+        for (int i = 0; i < chunk.registers; i++) {
+            if (i < chunk.arity) {
+                jvm.load(3);
+                jvm.pushInt(emitter, i);
+                jvm.op(ClassEmitter.AALOAD);
+            } else {
+                jvm.op(ClassEmitter.ACONST_NULL);
+            }
+            jvm.store(FIRST_REGISTER + i);
+        }
+
+        // JVM OFFSET OF EACH VM INSTRUCTION, AND BRANCHES TO FIX UP AFTER
+        int[] offsets = new int[code.length];
+        List<int[]> branches = new ArrayList<>();
+
+        int pc = 0;
+        while (pc < code.length) {
+            offsets[pc] = jvm.length();
+
+            switch (code[pc]) {
+
+                case OpCode.CONSTANT:
+                    constant(code[pc + 2]);
+                    store(code[pc + 1]);
+                    pc += 3;
+                    break;
+
+                case OpCode.MOVE:
+                    load(code[pc + 2]);
+                    store(code[pc + 1]);
+                    pc += 3;
+                    break;
+
+                case OpCode.GET_GLOBAL:
+                    jvm.load(1);
+                    constant(code[pc + 2]);
+                    token(pc);
+                    helper("getGlobal", "(" + INTERPRETER + O + O + ")" + O);
+                    store(code[pc + 1]);
+                    pc += 3;
+                    break;
+
+                case OpCode.SET_GLOBAL:
+                    jvm.load(1);
+                    load(code[pc + 1]);
+                    constant(code[pc + 2]);
+                    token(pc);
+                    helper("setGlobal", "(" + INTERPRETER + O + O + O + ")V");
+                    pc += 3;
+                    break;
+
+                case OpCode.GET_UPVALUE:
+                    jvm.load(2);
+                    jvm.pushInt(emitter, code[pc + 2]);
+                    constant(code[pc + 3]);
+                    helper("getUpvalue", "(" + ENVIRONMENT + "I" + O + ")" + O);
+                    store(code[pc + 1]);
+                    pc += 4;
+                    break;
+
+                case OpCode.SET_UPVALUE:
+                    jvm.load(2);
+                    load(code[pc + 1]);
+                    jvm.pushInt(emitter, code[pc + 2]);
+                    constant(code[pc + 3]);
+                    helper("setUpvalue", "(" + ENVIRONMENT + O + "I" + O + ")V");
+                    pc += 4;
+                    break;
+
+                case OpCode.ADD: binary("add", pc); pc += 4; break;
+                case OpCode.SUBTRACT: binary("subtract", pc); pc += 4; break;
+                case OpCode.MULTIPLY: binary("multiply", pc); pc += 4; break;
+                case OpCode.DIVIDE: binary("divide", pc); pc += 4; break;
+                case OpCode.EQUAL: binary("equal", pc); pc += 4; break;
+                case OpCode.NOT_EQUAL: binary("notEqual", pc); pc += 4; break;
+                case OpCode.LESS: binary("less", pc); pc += 4; break;
+                case OpCode.LESS_EQUAL: binary("lessEqual", pc); pc += 4; break;
+                case OpCode.GREATER: binary("greater", pc); pc += 4; break;
+                case OpCode.GREATER_EQUAL: binary("greaterEqual", pc); pc += 4; break;
+
+                case OpCode.NOT:
+                case OpCode.NEGATE:
+                    load(code[pc + 2]);
+                    token(pc);
+                    helper(code[pc] == OpCode.NOT ? "not" : "negate", "(" + O + O + ")" + O);
+                    store(code[pc + 1]);
+                    pc += 3;
+                    break;
+
+                case OpCode.JUMP:
+                    branches.add(new int[] { jvm.branch(ClassEmitter.GOTO), code[pc + 1] });
+                    pc += 2;
+                    break;
+
+                case OpCode.JUMP_IF_FALSE:
+                case OpCode.JUMP_IF_TRUE:
+                    load(code[pc + 1]);
+                    helper("isTruth", "(" + O + ")Z");
+                    branches.add(new int[] { jvm.branch(code[pc] == OpCode.JUMP_IF_FALSE
+                            ? ClassEmitter.IFEQ : ClassEmitter.IFNE), code[pc + 2] });
+                    pc += 3;
+                    break;
+
+                case OpCode.CALL:
+                    site(pc, code[pc + 4]);
+                    jvm.load(1);
+                    load(code[pc + 2]);
+                    arguments(code[pc + 3], code[pc + 4]);
+                    invokeSite();
+                    store(code[pc + 1]);
+                    pc += 5;
+                    break;
+
+                case OpCode.INVOKE:
+                    site(pc, code[pc + 5]);
+                    jvm.load(1);
+                    load(code[pc + 2]);
+                    constant(code[pc + 3]);
+                    helper("getProperty", "(" + O + O + ")" + O);
+                    arguments(code[pc + 4], code[pc + 5]);
+                    invokeSite();
+                    store(code[pc + 1]);
+                    pc += 6;
+                    break;
+
+                case OpCode.GET_PROPERTY:
+                    load(code[pc + 2]);
+                    constant(code[pc + 3]);
+                    helper("getProperty", "(" + O + O + ")" + O);
+                    store(code[pc + 1]);
+                    pc += 4;
+                    break;
+
+                case OpCode.SET_PROPERTY:
+                    load(code[pc + 1]);
+                    constant(code[pc + 2]);
+                    load(code[pc + 3]);
+                    helper("setProperty", "(" + O + O + O + ")V");
+                    pc += 4;
+                    break;
+
+                case OpCode.GET_INDEX:
+                    binary("getIndex", pc);
+                    pc += 4;
+                    break;
+
+                case OpCode.SET_INDEX:
+                    load(code[pc + 1]);
+                    load(code[pc + 2]);
+                    load(code[pc + 3]);
+                    token(pc);
+                    helper("setIndex", "(" + O + O + O + O + ")V");
+                    pc += 4;
+                    break;
+
+                case OpCode.GET_SUPER:
+                    jvm.load(2);
+                    jvm.pushInt(emitter, code[pc + 2]);
+                    constant(code[pc + 3]);
+                    helper("getSuper", "(" + ENVIRONMENT + "I" + O + ")" + O);
+                    store(code[pc + 1]);
+                    pc += 4;
+                    break;
+
+                case OpCode.PRINT:
+                    load(code[pc + 1]);
+                    helper("print", "(" + O + ")V");
+                    pc += 2;
+                    break;
+
+                case OpCode.RETURN:
+                    load(code[pc + 1]);
+                    jvm.op(ClassEmitter.ARETURN);
+                    pc += 2;
+                    break;
+
+                case OpCode.RETURN_NIL:
+                    jvm.op(ClassEmitter.ACONST_NULL);
+                    jvm.op(ClassEmitter.ARETURN);
+                    pc += 1;
+                    break;
+
+                case OpCode.INCREMENT:
+                    load(code[pc + 1]);
+                    constant(code[pc + 2]);
+                    token(pc);
+                    helper("add", "(" + O + O + O + ")" + O);
+                    store(code[pc + 1]);
+                    pc += 3;
+                    break;
+
+                case OpCode.JUMP_IF_NOT_LESS:
+                case OpCode.JUMP_IF_NOT_LESS_EQUAL:
+                    load(code[pc + 1]);
+                    constant(code[pc + 2]);
+                    token(pc);
+                    helper(code[pc] == OpCode.JUMP_IF_NOT_LESS ? "isLess" : "isLessEqual",
+                            "(" + O + O + O + ")Z");
+                    branches.add(new int[] { jvm.branch(ClassEmitter.IFEQ), code[pc + 3] });
+                    pc += 4;
+                    break;
+
+                default:
+                    return null;
+            }
+        }
+
+        // BRANCH OFFSETS ARE SIGNED 16 BIT
+        if (jvm.length() > Short.MAX_VALUE) return null;
+
+        for (int[] branch : branches) {
+            jvm.patch(branch[0], offsets[branch[1]]);
+        }
+
+        return jvm.toByteArray();
+    }
+
+    // dst = helper(a, b, token)
+
+    private void binary(String helper, int pc) {
+        load(chunk.code[pc + 2]);
+        load(chunk.code[pc + 3]);
+        token(pc);
+        helper(helper, "(" + O + O + O + ")" + O);
+        store(chunk.code[pc + 1]);
+    }
+
+    // PACK count REGISTERS STARTING AT first INTO AN Object[]
+
+    private void arguments(int first, int count) {
+        jvm.pushInt(emitter, count);
+        jvm.op2(ClassEmitter.ANEWARRAY, emitter.classRef(OBJECT));
+        for (int i = 0; i < count; i++) {
+            jvm.op(ClassEmitter.DUP);
+            jvm.pushInt(emitter, i);
+            load(first + i);
+            jvm.op(ClassEmitter.AASTORE);
+        }
+    }
+
+    // PUSH A NEW CALL SITE'S INVOKER, THEN invokeSite CALLS IT WITH
+    // (interpreter, callee, arguments)
+
+    private void site(int pc, int count) {
+        String field = "site" + sites.size();
+        sites.add(new PklCallSite(chunk.tokens[pc], count));
+        emitter.staticField(field, "L" + METHOD_HANDLE + ";");
+        jvm.op2(ClassEmitter.GETSTATIC, emitter.fieldRef(className, field, "L" + METHOD_HANDLE + ";"));
+    }
+
+    private void invokeSite() {
+        jvm.op2(ClassEmitter.INVOKEVIRTUAL, emitter.methodRef(METHOD_HANDLE, "invokeExact",
+                "(" + INTERPRETER + O + "[" + O + ")" + O));
+    }
+
+    private void load(int register) {
+        jvm.load(FIRST_REGISTER + register);
+    }
+
+    private void store(int register) {
+        jvm.store(FIRST_REGISTER + register);
+    }
+
+    private void constant(int index) {
+        jvm.load(4);
+        jvm.pushInt(emitter, index);
+        jvm.op(ClassEmitter.AALOAD);
+    }
+
+    // ERROR TOKENS LIVE IN THE CONSTANTS TOO, AFTER THE CHUNK'S OWN
+
+    private void token(int pc) {
+        Token token = chunk.tokens[pc];
+        if (token == null) {
+            jvm.op(ClassEmitter.ACONST_NULL);
+            return;
+        }
+        pool.add(token);
+        constant(pool.size() - 1);
+    }
+
+    private void helper(String name, String descriptor) {
+        jvm.op2(ClassEmitter.INVOKESTATIC, emitter.methodRef(RUNTIME, name, descriptor));
+    }
+}
@@ -0,0 +1,165 @@
+package com.pikl;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
+/*
+
+    HELPERS CALLED FROM JIT GENERATED CODE
+
+    EACH MIRRORS ONE REGISTER VM INSTRUCTION. THEY ARE SMALL STATIC
+    METHODS SO HOTSPOT INLINES THEM INTO THE GENERATED CODE, TOKENS ARE
+    PASSED AS Object TO KEEP THE GENERATED BYTECODE FREE OF CASTS
+
+ */
+
+final class JitRuntime {
+
+    private JitRuntime() {}
+
+    // CALL SITES OF THE CLASS BEING LOADED, READ BY ITS STATIC INITIALIZER
+    static PklCallSite[] linking = null;
+
+    static MethodHandle site(int index) {
+        return linking[index].dynamicInvoker();
+    }
+
+    static Object getGlobal(Interpreter interpreter, Object cell, Object name) {
+        return interpreter.globals.read((Globals.Cell)cell, (Token)name);
+    }
+
+    static void setGlobal(Interpreter interpreter, Object value, Object cell, Object name) {
+        interpreter.globals.write((Globals.Cell)cell, (Token)name, value);
+    }
+
+    static Object getUpvalue(Environment closure, int distance, Object name) {
+        return closure.getAt(distance, (String)name);
+    }
+
+    static void setUpvalue(Environment closure, Object value, int distance, Object name) {
+        closure.assignAt(distance, (Token)name, value);
+    }
+
+    static Object add(Object left, Object right, Object token) {
+        if (left instanceof Integer && right instanceof Integer) {
+            int a = (int)left, b = (int)right, r = a + b;
+            if (((a ^ r) & (b ^ r)) >= 0) return r;
+        }
+        return Operators.add((Token)token, left, right);
+    }
+
+    static Object subtract(Object left, Object right, Object token) {
+        if (left instanceof Integer && right instanceof Integer) {
+            int a = (int)left, b = (int)right, r = a - b;
+            if (((a ^ b) & (a ^ r)) >= 0) return r;
+        }
+        return Operators.subtract((Token)token, left, right);
+    }
+
+    static Object multiply(Object left, Object right, Object token) {
+        return Operators.multiply((Token)token, left, right);
+    }
+
+    static Object divide(Object left, Object right, Object token) {
+        return Operators.divide((Token)token, left, right);
+    }
+
+    static Object equal(Object left, Object right, Object token) {
+        return Operators.isEqual(left, right);
+    }
+
+    static Object notEqual(Object left, Object right, Object token) {
+        return !Operators.isEqual(left, right);
+    }
+
+    static Object less(Object left, Object right, Object token) {
+        return isLess(left, right, token);
+    }
+
+    static Object lessEqual(Object left, Object right, Object token) {
+        return isLessEqual(left, right, token);
+    }
+
+    static Object greater(Object left, Object right, Object token) {
+        return Operators.greater((Token)token, left, right);
+    }
+
+    static Object greaterEqual(Object left, Object right, Object token) {
+        return Operators.greaterEqual((Token)token, left, right);
+    }
+
+    static boolean isLess(Object left, Object right, Object token) {
+        if (left instanceof Integer && right instanceof Integer) return (int)left < (int)right;
+        return Operators.less((Token)token, left, right);
+    }
+
+    static boolean isLessEqual(Object left, Object right, Object token) {
+        if (left instanceof Integer && right instanceof Integer) return (int)left <= (int)right;
+        return Operators.lessEqual((Token)token, left, right);
+    }
+
+    static Object not(Object value, Object token) {
+        return !Operators.isTruth(value);
+    }
+
+    static Object negate(Object value, Object token) {
+        return Operators.negate((Token)token, value);
+    }
+
+    static boolean isTruth(Object value) {
+        return Operators.isTruth(value);
+    }
+
+    static Object call(Interpreter interpreter, Object paren, Object callee, Object[] arguments) {
+        if (callee instanceof PklFunction) {
+            PklFunction function = (PklFunction)callee;
+            JitCode code = interpreter.jit.enter(function.declaration);
+
+            if (code != null && arguments.length == function.arity()) {
+                Stats.functionCalls++;
+                return function.call(interpreter, code, arguments);
+            }
+        }
+
+        return Operators.call(interpreter, (Token)paren, callee, Arrays.asList(arguments));
+    }
+
+    static Object getProperty(Object object, Object name) {
+        return Operators.getProperty((Token)name, object);
+    }
+
+    static void setProperty(Object object, Object name, Object value) {
+        if (!(object instanceof PklInstance)) {
+            throw new RuntimeError((Token)name, "Only instances have fields.");
+        }
+        ((PklInstance)object).set((Token)name, value);
+    }
+
+    static Object getIndex(Object object, Object index, Object token) {
+        return Operators.getIndex((Token)token, object, index);
+    }
+
+    static void setIndex(Object object, Object index, Object value, Object token) {
+        if (!(object instanceof NativeObject)) {
+            throw new RuntimeError((Token)token, "Only lists and maps can be indexed.");
+        }
+        ((NativeObject)object).setIndex((Token)token, index, value);
+    }
+
+    static Object getSuper(Environment closure, int distance, Object name) {
+        Token method = (Token)name;
+        PklClass superclass = (PklClass)closure.getAt(distance, "super");
+        PklInstance object = (PklInstance)closure.getAt(distance - 1, "this");
+
+        PklFunction function = superclass.findMethod(object, method.lexeme);
+        if (function == null) {
+            throw new RuntimeError(method,
+                    "Undefined property '" + method.lexeme + "'.");
+        }
+        return function;
+    }
+
+    static void print(Object value) {
+        System.out.println(Operators.stringify(value));
+    }
+}
@@ -0,0 +1,194 @@
+package com.pikl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+
+    FRONT END FOR WHOLE PROGRAMS
+
+    EVERY SOURCE FILE, AND EVERY FILE LARGER THAN PIECE_SIZE, IS CUT INTO
+    PIECES AT TOP LEVEL STATEMENT BOUNDARIES. EACH PIECE IS SCANNED AND
+    PARSED ON ITS OWN ON THE COMMON FORK-JOIN POOL, THEN THE DECLARATION
+    LISTS ARE JOINED IN SOURCE ORDER FOR THE RESOLVER. SYNTAX ERRORS ARE
+    HELD BACK PER PIECE AND PRINTED IN THE SAME ORDER AFTER THE JOIN.
+
+    A SINGLE SMALL FILE IS STILL SCANNED AND PARSED ON THE CALLING THREAD
+
+ */
+
+final class Loader {
+
+    // SPLIT ONCE A PIECE HAS GROWN PAST THIS MANY CHARACTERS
+    static final int PIECE_SIZE = 64 * 1024;
+
+    private Loader() {}
+
+    private static class Piece {
+        final String source;
+        final int line;
+        final boolean lazy;
+
+        List<Statement> statements;
+        final StringBuilder errors = new StringBuilder();
+        long scanTime;
+        long parseTime;
+
+        Piece(String source, int line, boolean lazy) {
+            this.source = source;
+            this.line = line;
+            this.lazy = lazy;
+        }
+
+        void run() {
+            Main.pending.set(errors);
+            try {
+                long time = System.nanoTime();
+                List<Token> tokens = new Scanner(source, line).scanTokens();
+                scanTime = System.nanoTime() - time;
+
+                time = System.nanoTime();
+                statements = new Parser(tokens, lazy).parse();
+                parseTime = System.nanoTime() - time;
+            } finally {
+                Main.pending.remove();
+            }
+        }
+    }
+
+    static List<Statement> parse(List<String> sources, boolean lazy) {
+        List<Piece> pieces = new ArrayList<>();
+        for (String source : sources) {
+            split(source, lazy, pieces);
+        }
+
+        if (pieces.size() == 1) {
+            pieces.get(0).run();
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Piece piece : pieces) {
+                tasks.add(ForkJoinPool.commonPool().submit(piece::run));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+
+        // PHASE TIMES ARE SUMMED OVER THE PIECES, NOT WALL TIME
+        List<Statement> statements = new ArrayList<>();
+        for (Piece piece : pieces) {
+            Stats.scanTime += piece.scanTime;
+            Stats.parseTime += piece.parseTime;
+            System.err.print(piece.errors);
+            statements.addAll(piece.statements);
+        }
+        return statements;
+    }
+
+    /*
+        ONE PASS FOR --resolve-while-parsing. EVERY SOURCE IS SCANNED FIRST,
+        THEN PARSED IN ORDER ON THE CALLING THREAD, AND EACH TOP LEVEL
+        STATEMENT GOES TO resolver AS SOON AS IT IS PARSED. AFTER A SYNTAX
+        ERROR THE REST IS ONLY PARSED. RESOLVE TIME COUNTS AS PARSE TIME
+    */
+
+    static List<Statement> parse(List<String> sources, boolean lazy, Resolver resolver) {
+        long time = System.nanoTime();
+        List<List<Token>> scanned = new ArrayList<>();
+        for (String source : sources) {
+            scanned.add(new Scanner(source).scanTokens());
+        }
+        Stats.scanTime += System.nanoTime() - time;
+
+        time = System.nanoTime();
+        boolean resolving = !Main.hadError;
+        resolver.startProgram();
+
+        List<Statement> statements = new ArrayList<>();
+        for (List<Token> tokens : scanned) {
+            Parser parser = new Parser(tokens, lazy);
+            statements.addAll(parser.parse(resolving ? resolver : null));
+            if (parser.failed) resolving = false;
+        }
+
+        if (resolving) resolver.finishProgram();
+        Stats.parseTime += System.nanoTime() - time;
+        return statements;
+    }
+
+    /*
+        CUT source AFTER A NEWLINE THAT ENDS A TOP LEVEL STATEMENT, THAT IS
+        THE LAST THING ON THE LINE IS A ';' OR '}' OUTSIDE ANY BRACKETS,
+        STRINGS AND COMMENTS, AND THE NEXT LINE DOESN'T CARRY ON WITH else
+    */
+
+    private static void split(String source, boolean lazy, List<Piece> pieces) {
+        int start = 0;
+        int startLine = 1;
+        int line = 1;
+        int depth = 0;
+        char last = '\0';
+
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i++);
+
+            switch (c) {
+                case '"':
+                    while (i < source.length() && source.charAt(i) != '"') {
+                        if (source.charAt(i) == '\n') line++;
+                        i++;
+                    }
+                    i++;
+                    last = c;
+                    break;
+
+                case '/':
+                    if (i < source.length() && source.charAt(i) == '/') {
+                        while (i < source.length() && source.charAt(i) != '\n') i++;
+                    } else {
+                        last = c;
+                    }
+                    break;
+
+                case '(': case '{': case '[':
+                    depth++;
+                    last = c;
+                    break;
+
+                case ')': case '}': case ']':
+                    depth--;
+                    last = c;
+                    break;
+
+                case '\n':
+                    line++;
+                    if (i - start >= PIECE_SIZE && depth == 0 &&
+                            (last == ';' || last == '}') && !continuesWithElse(source, i)) {
+                        pieces.add(new Piece(source.substring(start, i), startLine, lazy));
+                        start = i;
+                        startLine = line;
+                    }
+                    break;
+
+                case ' ': case '\r': case '\t':
+                    break;
+
+                default:
+                    last = c;
+                    break;
+            }
+        }
+
+        if (start < source.length() || pieces.isEmpty()) {
+            pieces.add(new Piece(source.substring(start), startLine, lazy));
+        }
+    }
+
+    private static boolean continuesWithElse(String source, int i) {
+        while (i < source.length() && Character.isWhitespace(source.charAt(i))) i++;
+        return source.startsWith("else", i);
+    }
+}
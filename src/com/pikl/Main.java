@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Main {
@@ -13,9 +15,25 @@ public class Main {
 
     private static final Interpreter interpreter = new Interpreter();
 
+    // --resolve-while-parsing, SEE Loader
+    private static boolean resolveWhileParsing = false;
+
+    // SNAPSHOT FILES FROM --snapshot= AND --save-snapshot=
+    private static String snapshot = null;
+    private static String saveSnapshot = null;
+
+    // WHILE A Loader PIECE IS PARSED ITS ERRORS ARE KEPT HERE, SO THEY CAN
+    // BE PRINTED IN SOURCE ORDER ONCE EVERY PIECE IS DONE
+    static final ThreadLocal<StringBuilder> pending = new ThreadLocal<>();
+
     private static void report(int line, String where, String message) {
-        System.err.println(
-                "[line " + line + "] Error" + where + ": " + message);
+        String error = "[line " + line + "] Error" + where + ": " + message;
+        StringBuilder buffer = pending.get();
+        if (buffer != null) {
+            buffer.append(error).append(System.lineSeparator());
+        } else {
+            System.err.println(error);
+        }
         hadError = true;
     }
 
@@ -37,28 +55,46 @@ public class Main {
         hadRuntimeError = true;
     }
 
-    static void begin(String data) {
+    static List<Statement> begin(List<String> sources) {
 
         System.out.println("Scanning...");
 
-        Scanner scanner = new Scanner(data);
-        List<Token> tokens = scanner.scanTokens();
-
-        Parser parser = new Parser(tokens);
+        Resolver resolver = new Resolver(interpreter);
 
-        List<Statement> statements = parser.parse();
+        // SCAN AND PARSE, IN PARALLEL FOR LARGE OR MULTI-FILE PROGRAMS, OR
+        // IN ONE PASS WITH THE RESOLVER
+        List<Statement> statements = resolveWhileParsing
+                ? Loader.parse(sources, interpreter.lazy, resolver)
+                : Loader.parse(sources, interpreter.lazy);
 
         // Stop if there was a syntax error.
-        if (hadError) return;
+        if (hadError) return null;
 
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
+        long time = System.nanoTime();
+
+        if (!resolveWhileParsing) resolver.resolveProgram(statements);
+
+        // DROP UNUSED DECLARATIONS, UNLESS A SNAPSHOT'S CODE MIGHT USE THEM
+        if (!hadError && snapshot == null && saveSnapshot == null) {
+            statements = resolver.shake(statements);
+        }
+
+        Stats.resolveTime += System.nanoTime() - time;
 
         // Stop if there was a semantic error.
-        if (hadError) return;
+        if (hadError) return null;
+
+        time = System.nanoTime();
 
         interpreter.interpret(statements);
 
+        Stats.executeTime += System.nanoTime() - time;
+
+        return statements;
+    }
+
+    static void begin(String data) {
+        begin(Collections.singletonList(data));
     }
 
     static void begin(byte[] data) {
@@ -66,14 +102,44 @@ public class Main {
     }
 
     /*
-        LOAD FILE TO BYTE ARRAY
-        PASS LOADED DATA TO BEGIN FUNCTION FOR PROCESSING
-        IF THE FILE CAN NOT BE READ, THIS WILL THROW AN IOException
+        LOAD FILES TO STRINGS
+        PASS LOADED DATA TO BEGIN FUNCTION FOR PROCESSING, THE FILES RUN
+        AS ONE PROGRAM IN THE ORDER GIVEN
+        IF A FILE CAN NOT BE READ, THIS WILL THROW AN IOException
     */
 
-    static void load(String dir) throws IOException {
-        byte[] data = Files.readAllBytes(Paths.get(dir));
-        begin(data);
+    static void load(List<String> files) throws IOException {
+        List<String> sources = new ArrayList<>();
+        for (String file : files) {
+            sources.add(new String(Files.readAllBytes(Paths.get(file)), Charset.defaultCharset()));
+        }
+        // IMPORTS IN THE MAIN SCRIPT ARE RELATIVE TO ITS DIRECTORY
+        interpreter.modules.base = Paths.get(files.get(0)).toAbsolutePath().getParent();
+
+        if (snapshot != null) {
+            try {
+                Snapshot.restore(interpreter, Paths.get(snapshot));
+            } catch (IOException | Snapshot.SnapshotError e) {
+                System.out.println("Unable to load snapshot <" + snapshot + "> " + e.getMessage());
+                System.exit(74);
+            }
+        }
+
+        List<Statement> statements = begin(sources);
+
+        String dir = String.join(", ", files);
+
+        if (saveSnapshot != null && statements != null && !hadRuntimeError) {
+            try {
+                Snapshot.save(interpreter, sources, statements, Paths.get(saveSnapshot));
+            } catch (IOException | Snapshot.SnapshotError e) {
+                System.out.println("Unable to write snapshot <" + saveSnapshot + "> " + e.getMessage());
+                System.exit(74);
+            }
+        }
+
+        // FLUSH ANY FILES THE SCRIPT LEFT OPEN
+        PklFile.closeAll();
 
         if (hadError) {
             System.out.println("Unable to compile file <" + dir + "> exiting...");
@@ -88,19 +154,57 @@ public class Main {
     /*
         ENTRY POINT
 
-        FIRST ARGUMENT SHOULD BE DIRECTORY TO A PIKL FILE
-        MAIN FUNCTION PASSES A STRING CONTAINING DIRECTORY TO LOAD FUNCTION
+        ARGUMENTS SHOULD BE DIRECTORIES TO ONE OR MORE PIKL FILES
+        MAIN FUNCTION PASSES THEM TO LOAD FUNCTION
+
+        OPTIONS MAY BE GIVEN ALONGSIDE THE FILE:
+            --stats     PRINT RUNTIME COUNTERS AND PHASE TIMINGS AT EXIT
+            --jmx       EXPOSE THE SAME COUNTERS AS THE com.pikl:type=Stats MBEAN
+            --vm        RUN FUNCTIONS ON THE REGISTER VM INSTEAD OF THE TREE WALKER
+            --jit       COMPILE HOT FUNCTIONS TO JVM BYTECODE
+            --lazy      ONLY PRE-PARSE FUNCTION BODIES, PARSING EACH ON ITS FIRST CALL
+            --resolve-while-parsing RESOLVE EACH TOP LEVEL STATEMENT AS SOON AS IT IS PARSED
+            --save-snapshot=FILE    AFTER RUNNING, SAVE THE GLOBAL HEAP TO FILE
+            --snapshot=FILE         START FROM A SAVED HEAP INSTEAD OF AN EMPTY ONE
     */
 
     public static void main(String args[]) {
         System.out.println("Initialising...");
 
-        if (args.length != 1) {
+        List<String> files = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.equals("--stats")) {
+                Runtime.getRuntime().addShutdownHook(
+                        new Thread(() -> Stats.dump(System.err)));
+            } else if (arg.equals("--jmx")) {
+                Stats.register();
+            } else if (arg.equals("--vm")) {
+                interpreter.useRegisterVM();
+            } else if (arg.equals("--jit")) {
+                interpreter.useJit();
+            } else if (arg.equals("--lazy")) {
+                interpreter.useLazyParsing();
+            } else if (arg.equals("--resolve-while-parsing")) {
+                resolveWhileParsing = true;
+            } else if (arg.startsWith("--save-snapshot=")) {
+                saveSnapshot = arg.substring("--save-snapshot=".length());
+            } else if (arg.startsWith("--snapshot=")) {
+                snapshot = arg.substring("--snapshot=".length());
+            } else if (arg.startsWith("--")) {
+                System.out.println("Unknown option " + arg + ", exiting...");
+                System.exit(64);
+            } else {
+                files.add(arg);
+            }
+        }
+
+        if (files.isEmpty()) {
             System.out.println("Invalid number of args, exiting...");
             System.exit(64);
         } else {
             try {
-                load(args[0]);
+                load(files);
             } catch (Exception e) {
                 e.printStackTrace();
             }
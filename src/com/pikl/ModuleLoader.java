@@ -0,0 +1,150 @@
+package com.pikl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    LOADS MODULES FOR import "path";
+
+    A MODULE IS SCANNED, PARSED AND RESOLVED ONCE AND CACHED BY PATH. THE
+    CACHED COPY IS REUSED UNTIL THE FILE'S MODIFICATION TIME CHANGES.
+
+    IMPORTING DOESN'T RUN THE MODULE. EACH OF ITS TOP LEVEL NAMES IS
+    DEFINED IN globals AS THE Module ITSELF, AND THE FIRST READ OR WRITE
+    OF ANY OF THEM RUNS THE WHOLE MODULE IN globals, REPLACING THE
+    MARKERS WITH THE REAL VALUES
+
+    RELATIVE PATHS ARE RESOLVED AGAINST THE IMPORTING MODULE'S DIRECTORY,
+    OR base FOR THE MAIN SCRIPT
+
+ */
+
+class ModuleLoader {
+
+    private final Interpreter interpreter;
+    private final Map<Path, Module> modules = new HashMap<>();
+
+    Path base = Paths.get("").toAbsolutePath();
+
+    ModuleLoader(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    static class Module {
+        private final ModuleLoader loader;
+        final Path path;
+        final FileTime modified;
+        final List<Statement> statements;
+        final List<String> names = new ArrayList<>();
+
+        private boolean imported = false;
+        private boolean running = false;
+
+        Module(ModuleLoader loader, Path path, FileTime modified, List<Statement> statements) {
+            this.loader = loader;
+            this.path = path;
+            this.modified = modified;
+            this.statements = statements;
+        }
+
+        // RUN THE MODULE IF IT HASN'T BEEN, THEN RETURN name'S REAL VALUE
+
+        Object force(Token name) {
+            if (!running) {
+                running = true;
+                loader.run(this);
+            }
+
+            Object value = loader.interpreter.globals.getAt(0, name.lexeme);
+            if (value == this) {
+                // READ BEFORE THE MODULE DEFINED IT
+                throw new RuntimeError(name,
+                        "Undefined variable '" + name.lexeme + "'.");
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "<module " + path.getFileName() + ">";
+        }
+    }
+
+    void load(Statement.Import stmt) {
+        Path directory = stmt.directory != null ? stmt.directory : base;
+        Path path = directory.resolve(stmt.path).normalize();
+
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            throw new RuntimeError(stmt.keyword, "Unable to read module '" + stmt.path + "'.");
+        }
+
+        Module module = modules.get(path);
+        if (module == null || !module.modified.equals(modified)) {
+            module = compile(stmt, path, modified);
+            modules.put(path, module);
+        }
+
+        if (module.imported) return;
+        module.imported = true;
+
+        for (String name : module.names) {
+            interpreter.globals.define(name, module);
+        }
+    }
+
+    private Module compile(Statement.Import stmt, Path path, FileTime modified) {
+        String source;
+        try {
+            source = new String(Files.readAllBytes(path), Charset.defaultCharset());
+        } catch (IOException e) {
+            throw new RuntimeError(stmt.keyword, "Unable to read module '" + stmt.path + "'.");
+        }
+
+        List<Token> tokens = new Scanner(source).scanTokens();
+        List<Statement> statements = new Parser(tokens, interpreter.lazy).parse();
+        if (!Main.hadError) {
+            new Resolver(interpreter).resolve(statements);
+        }
+        if (Main.hadError) {
+            throw new RuntimeError(stmt.keyword, "Unable to compile module '" + stmt.path + "'.");
+        }
+
+        Module module = new Module(this, path, modified, statements);
+
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Var) {
+                module.names.add(((Statement.Var)statement).name.lexeme);
+            } else if (statement instanceof Statement.Function) {
+                module.names.add(((Statement.Function)statement).name.lexeme);
+            } else if (statement instanceof Statement.Class) {
+                module.names.add(((Statement.Class)statement).name.lexeme);
+            } else if (statement instanceof Statement.Import) {
+                ((Statement.Import)statement).directory = path.getParent();
+            }
+        }
+
+        return module;
+    }
+
+    private void run(Module module) {
+        Statement.Function caller = interpreter.currentFunction;
+        interpreter.currentFunction = null;
+        try {
+            interpreter.executeBlock(module.statements, interpreter.globals);
+        } finally {
+            interpreter.currentFunction = caller;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.pikl;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/*
+
+    A CALLABLE IMPLEMENTED IN JAVA
+
+    NATIVES THROW RuntimeError WITHOUT A TOKEN, THE INTERPRETER
+    ATTACHES THE CALL SITE BEFORE REPORTING IT
+
+ */
+
+class NativeFunction implements Callable {
+
+    interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments);
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body body;
+
+    NativeFunction(String name, int arity, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return body.call(interpreter, arguments);
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn " + name + ">";
+    }
+
+    // ARGUMENT HELPERS SHARED BY THE NATIVE LIBRARY
+
+    // A Long OR BigInteger IS AN INTEGER, JUST TOO BIG FOR AN int ARGUMENT
+
+    static int toInt(Object value, String what) {
+        if (value instanceof Integer) return (int)value;
+        if (value instanceof Long || value instanceof BigInteger) {
+            throw new RuntimeError(null, what + " out of range.");
+        }
+        throw new RuntimeError(null, what + " must be an integer.");
+    }
+
+    static double toDouble(Object value, String what) {
+        if (value instanceof Double) return (double)value;
+        if (value instanceof Integer) return (int)value;
+        if (Operators.isNumber(value)) return ((Number)value).doubleValue();
+        throw new RuntimeError(null, what + " must be a number.");
+    }
+
+    static String toStr(Object value, String what) {
+        if (value instanceof String) return (String)value;
+        throw new RuntimeError(null, what + " must be a string.");
+    }
+}
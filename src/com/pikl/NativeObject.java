@@ -0,0 +1,26 @@
+package com.pikl;
+
+/*
+
+    BASE CLASS FOR VALUES IMPLEMENTED IN JAVA (LISTS, MAPS ...)
+
+    PROPERTY ACCESS RETURNS METHODS BOUND TO THE RECEIVER,
+    INDEXING IS ONLY SUPPORTED BY TYPES THAT OVERRIDE IT
+
+ */
+
+abstract class NativeObject {
+
+    Object get(Token name) {
+        throw new RuntimeError(name,
+                "Undefined property '" + name.lexeme + "'.");
+    }
+
+    Object getIndex(Token bracket, Object index) {
+        throw new RuntimeError(bracket, "Only lists and maps can be indexed.");
+    }
+
+    void setIndex(Token bracket, Object index, Object value) {
+        throw new RuntimeError(bracket, "Only lists and maps can be indexed.");
+    }
+}
@@ -0,0 +1,60 @@
+package com.pikl;
+
+/*
+
+    INSTRUCTION SET OF THE REGISTER VM
+
+    EVERY INSTRUCTION IS AN OPCODE FOLLOWED BY ITS OPERANDS IN THE SAME
+    int[]. REGISTER OPERANDS ARE FRAME SLOTS, name AND k OPERANDS INDEX
+    THE CHUNK'S CONSTANT POOL, JUMP TARGETS ARE ABSOLUTE
+
+ */
+
+final class OpCode {
+
+    private OpCode() {}
+
+    static final int CONSTANT = 0;             // dst k
+    static final int MOVE = 1;                 // dst src
+    static final int GET_GLOBAL = 2;           // dst name
+    static final int SET_GLOBAL = 3;           // src name
+    static final int GET_UPVALUE = 4;          // dst depth name
+    static final int SET_UPVALUE = 5;          // src depth name
+
+    static final int ADD = 6;                  // dst a b
+    static final int SUBTRACT = 7;
+    static final int MULTIPLY = 8;
+    static final int DIVIDE = 9;
+    static final int EQUAL = 10;
+    static final int NOT_EQUAL = 11;
+    static final int LESS = 12;
+    static final int LESS_EQUAL = 13;
+    static final int GREATER = 14;
+    static final int GREATER_EQUAL = 15;
+
+    static final int NOT = 16;                 // dst a
+    static final int NEGATE = 17;              // dst a
+
+    static final int JUMP = 18;                // target
+    static final int JUMP_IF_FALSE = 19;       // a target
+    static final int JUMP_IF_TRUE = 20;        // a target
+
+    static final int CALL = 21;                // dst callee first count
+    static final int GET_PROPERTY = 22;        // dst object name
+    static final int SET_PROPERTY = 23;        // object name value
+    static final int GET_INDEX = 24;           // dst object index
+    static final int SET_INDEX = 25;           // object index value
+    static final int GET_SUPER = 26;           // dst depth name
+
+    static final int PRINT = 27;               // a
+    static final int RETURN = 28;              // a
+    static final int RETURN_NIL = 29;
+
+    // SUPERINSTRUCTIONS FOR THE SHAPES PIKL CODE PRODUCES MOST
+
+    static final int INCREMENT = 30;           // a k                 a = a + k
+    static final int JUMP_IF_NOT_LESS = 31;    // a k target          if (!(a < k)) goto target
+    static final int JUMP_IF_NOT_LESS_EQUAL = 32; // a k target       if (!(a <= k)) goto target
+    static final int INVOKE = 33;              // dst object name first count
+
+}
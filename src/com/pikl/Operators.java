@@ -0,0 +1,339 @@
+package com.pikl;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/*
+
+    OPERATOR SEMANTICS SHARED BY THE TREE WALKING INTERPRETER AND THE
+    REGISTER VM, SO BOTH BACK ENDS AGREE ON EVERY RESULT AND ERROR
+
+ */
+
+final class Operators {
+
+    private Operators() {}
+
+    /*
+
+        NUMBERS. INTEGERS ARE AN Integer WHILE THEY FIT IN 32 BITS, THEN A
+        Long, THEN A BigInteger, AND EVERY RESULT IS NARROWED BACK TO THE
+        SMALLEST OF THOSE THAT HOLDS IT, SO EQUAL VALUES ALWAYS HAVE THE SAME
+        TYPE. ANY Double OPERAND MAKES THE RESULT A Double.
+
+        THE Integer CASE IS TRIED FIRST AND ONLY LEAVES int ARITHMETIC WHEN
+        THE OVERFLOW CHECK FAILS
+
+     */
+
+    static Object add(Token operator, Object left, Object right) {
+
+        // CHECK IF BOTH ARE INTEGER VALUES
+        if (left instanceof Integer && right instanceof Integer) {
+            int a = (int)left, b = (int)right, r = a + b;
+            if (((a ^ r) & (b ^ r)) >= 0) return r;
+            return (long)a + b;
+        }
+
+        // IF THEY AREN'T NUMERICAL THEY SHOULD BE STRINGS
+        if (left instanceof String || right instanceof String) {
+            return left.toString() + right.toString();
+        }
+
+        checkNumberOperands(operator, left, right);
+        return arithmetic(TokenType.PLUS, left, right);
+    }
+
+    // ADD TWO VALUES ALREADY KNOWN TO BE NUMBERS, FOR NATIVES WITH NO
+    // OPERATOR TOKEN TO REPORT AGAINST
+
+    static Object addNumbers(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Integer) {
+            int a = (int)left, b = (int)right, r = a + b;
+            if (((a ^ r) & (b ^ r)) >= 0) return r;
+            return (long)a + b;
+        }
+
+        return arithmetic(TokenType.PLUS, left, right);
+    }
+
+    static Object subtract(Token operator, Object left, Object right) {
+
+        if (left instanceof Integer && right instanceof Integer) {
+            int a = (int)left, b = (int)right, r = a - b;
+            if (((a ^ b) & (a ^ r)) >= 0) return r;
+            return (long)a - b;
+        }
+
+        checkNumberOperands(operator, left, right);
+        return arithmetic(TokenType.MINUS, left, right);
+    }
+
+    static Object multiply(Token operator, Object left, Object right) {
+
+        if (left instanceof Integer && right instanceof Integer) {
+            long r = (long)(int)left * (int)right;
+            if ((int)r == r) return (int)r;
+            return r;
+        }
+
+        checkNumberOperands(operator, left, right);
+        return arithmetic(TokenType.STAR, left, right);
+    }
+
+    static Object divide(Token operator, Object left, Object right) {
+
+        checkNumberOperands(operator, left, right);
+
+        // INTEGER DIVISION TRUNCATES, MIN_VALUE / -1 IS THE ONLY int OVERFLOW
+        if (left instanceof Integer && right instanceof Integer) {
+            int a = (int)left, b = (int)right;
+            if (b == -1) return negate(operator, left);
+            return a / b;
+        }
+
+        return arithmetic(TokenType.SLASH, left, right);
+    }
+
+    static boolean greater(Token operator, Object left, Object right) {
+
+        if (left instanceof Integer && right instanceof Integer) {
+            return (int)left > (int)right;
+        }
+
+        checkNumberOperands(operator, left, right);
+        return compare(TokenType.GREATER, left, right);
+    }
+
+    static boolean greaterEqual(Token operator, Object left, Object right) {
+
+        if (left instanceof Integer && right instanceof Integer) {
+            return (int)left >= (int)right;
+        }
+
+        checkNumberOperands(operator, left, right);
+        return compare(TokenType.GREATER_EQUAL, left, right);
+    }
+
+    static boolean less(Token operator, Object left, Object right) {
+
+        if (left instanceof Integer && right instanceof Integer) {
+            return (int)left < (int)right;
+        }
+
+        checkNumberOperands(operator, left, right);
+        return compare(TokenType.LESS, left, right);
+    }
+
+    static boolean lessEqual(Token operator, Object left, Object right) {
+
+        if (left instanceof Integer && right instanceof Integer) {
+            return (int)left <= (int)right;
+        }
+
+        checkNumberOperands(operator, left, right);
+        return compare(TokenType.LESS_EQUAL, left, right);
+    }
+
+    static Object negate(Token operator, Object right) {
+        checkNumberOperand(operator, right);
+
+        if (right instanceof Integer) {
+            int value = (int)right;
+            if (value != Integer.MIN_VALUE) return -value;
+            return -(long)value;
+        }
+        if (right instanceof Double) return -(double)right;
+        if (right instanceof Long && (long)right != Long.MIN_VALUE) return narrow(-(long)right);
+        return narrow(toBig(right).negate());
+    }
+
+    // THE SLOW PATHS, OPERANDS ARE ALREADY KNOWN TO BE NUMBERS
+
+    private static Object arithmetic(TokenType type, Object left, Object right) {
+        if (left instanceof Double || right instanceof Double) {
+            double a = ((Number)left).doubleValue();
+            double b = ((Number)right).doubleValue();
+            switch (type) {
+                case PLUS: return a + b;
+                case MINUS: return a - b;
+                case STAR: return a * b;
+                default: return a / b;
+            }
+        }
+
+        if (!(left instanceof BigInteger) && !(right instanceof BigInteger)) {
+            long a = ((Number)left).longValue();
+            long b = ((Number)right).longValue();
+            try {
+                switch (type) {
+                    case PLUS: return narrow(Math.addExact(a, b));
+                    case MINUS: return narrow(Math.subtractExact(a, b));
+                    case STAR: return narrow(Math.multiplyExact(a, b));
+                    default:
+                        if (a == Long.MIN_VALUE && b == -1) break;
+                        return narrow(a / b);
+                }
+            } catch (ArithmeticException overflow) {
+                // FALL THROUGH TO BigInteger
+            }
+        }
+
+        BigInteger a = toBig(left);
+        BigInteger b = toBig(right);
+        switch (type) {
+            case PLUS: return narrow(a.add(b));
+            case MINUS: return narrow(a.subtract(b));
+            case STAR: return narrow(a.multiply(b));
+            default: return narrow(a.divide(b));
+        }
+    }
+
+    // DOUBLES USE THE PLAIN OPERATORS SO -0.0 EQUALS 0.0 AND NaN COMPARES FALSE
+
+    private static boolean compare(TokenType type, Object left, Object right) {
+        if (left instanceof Double || right instanceof Double) {
+            double a = ((Number)left).doubleValue();
+            double b = ((Number)right).doubleValue();
+            switch (type) {
+                case GREATER: return a > b;
+                case GREATER_EQUAL: return a >= b;
+                case LESS: return a < b;
+                default: return a <= b;
+            }
+        }
+
+        int order;
+        if (left instanceof BigInteger || right instanceof BigInteger) {
+            order = toBig(left).compareTo(toBig(right));
+        } else {
+            order = Long.compare(((Number)left).longValue(), ((Number)right).longValue());
+        }
+        switch (type) {
+            case GREATER: return order > 0;
+            case GREATER_EQUAL: return order >= 0;
+            case LESS: return order < 0;
+            default: return order <= 0;
+        }
+    }
+
+    private static BigInteger toBig(Object value) {
+        if (value instanceof BigInteger) return (BigInteger)value;
+        return BigInteger.valueOf(((Number)value).longValue());
+    }
+
+    // THE SMALLEST REPRESENTATION OF AN INTEGER VALUE
+
+    static Object narrow(long value) {
+        if ((int)value == value) return (int)value;
+        return value;
+    }
+
+    static Object narrow(BigInteger value) {
+        if (value.bitLength() < 64) return narrow(value.longValue());
+        return value;
+    }
+
+    static boolean isNumber(Object value) {
+        return value instanceof Integer || value instanceof Double ||
+                value instanceof Long || value instanceof BigInteger;
+    }
+
+    static Object getProperty(Token name, Object object) {
+        if (object instanceof PklInstance) {
+            return ((PklInstance) object).get(name);
+        }
+
+        if (object instanceof NativeObject) {
+            return ((NativeObject) object).get(name);
+        }
+
+        throw new RuntimeError(name,
+                "Only instances have properties.");
+    }
+
+    static Object getIndex(Token bracket, Object object, Object index) {
+        if (object instanceof NativeObject) {
+            return ((NativeObject) object).getIndex(bracket, index);
+        }
+
+        throw new RuntimeError(bracket, "Only lists and maps can be indexed.");
+    }
+
+    static Object call(Interpreter interpreter, Token paren, Object callee, List<Object> arguments) {
+
+        if (!(callee instanceof Callable)) {
+            throw new RuntimeError(paren,
+                    "Can only call functions and classes.");
+        }
+
+        Callable function = (Callable)callee;
+        if (arguments.size() != function.arity()) {
+            throw new RuntimeError(paren, "Expected " +
+                    function.arity() + " arguments but got " +
+                    arguments.size() + ".");
+        }
+
+        try {
+            return function.call(interpreter, arguments);
+        } catch (RuntimeError error) {
+            // NATIVES DON'T KNOW WHERE THEY WERE CALLED FROM
+            if (error.token != null) throw error;
+            throw new RuntimeError(paren, error.getMessage());
+        }
+    }
+
+    static void checkNumberOperand(Token operator, Object operand) {
+        if (isNumber(operand)) return;
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
+
+    static void checkNumberOperands(Token operator,
+                                    Object left, Object right) {
+
+        if (!isNumber(left) || !isNumber(right)) {
+            throw new RuntimeError(operator, "Operands must be numbers.");
+        }
+
+        // make sure we're not dividing by 0
+        if (operator.type == TokenType.SLASH) {
+            if (right instanceof Double ? (double)right == 0.0 : isZero(right))
+                throw new RuntimeError(operator, "Divide by zero error.");
+        }
+    }
+
+    private static boolean isZero(Object value) {
+        // NARROWED, SO ONLY AN Integer CAN BE ZERO
+        return value instanceof Integer && (int)value == 0;
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        // nil is only equal to nil.
+        if (a == null && b == null)
+            return true;
+
+        if (a == null)
+            return false;
+
+        return a.equals(b);
+    }
+
+    static boolean isTruth(Object object) {
+
+        if (object == null)
+            return false;
+
+        if (object instanceof Boolean)
+            return (boolean)object;
+
+        return true;
+    }
+
+    static String stringify(Object object) {
+
+        if (object == null)
+            return "nil";
+
+        return object.toString();
+    }
+}
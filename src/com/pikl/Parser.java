@@ -11,17 +11,36 @@ public class Parser {
     private static class ParseError extends RuntimeException {}
 
     private final List<Token> tokens;
+
+    // TOP LEVEL FUNCTION AND METHOD BODIES ARE ONLY BRACE MATCHED HERE
+    // AND PARSED ON THEIR FIRST CALL
+    private final boolean lazy;
+
     private int current = 0;
+    private int blockDepth = 0;
+
+    // SET BY THE FIRST SYNTAX ERROR
+    boolean failed = false;
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, boolean lazy) {
         this.tokens = tokens;
+        this.lazy = lazy;
     }
 
     List<Statement> parse() {
+        return parse(null);
+    }
+
+    // WITH A resolver, EACH TOP LEVEL STATEMENT IS RESOLVED AS SOON AS IT
+    // IS PARSED, UNTIL THE FIRST SYNTAX ERROR
+
+    List<Statement> parse(Resolver resolver) {
         List<Statement> statements = new ArrayList<>();
 
         while (!isAtEnd()) {
-            statements.add(declaration());
+            Statement statement = declaration();
+            statements.add(statement);
+            if (resolver != null && !failed) resolver.resolveNext(statement);
         }
 
         return statements;
@@ -32,6 +51,7 @@ public class Parser {
             if (match(CLASS)) return classDeclaration();
             if (match(FUN)) return function("function");
             if (match(VAR)) return varDeclaration();
+            if (match(IMPORT)) return importDeclaration();
 
             return statement();
         } catch (ParseError error) {
@@ -78,10 +98,43 @@ public class Parser {
         consume(RIGHT_PAREN, "Expect ')' after parameters.");
 
         consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
+
+        if (lazy && blockDepth == 0) {
+            Statement.Function function = new Statement.Function(name, parameters, null);
+            function.lazyBody = skipBody();
+            return function;
+        }
+
         List<Statement> body = block();
         return new Statement.Function(name, parameters, body);
     }
 
+    // PRE-PARSE: FIND THE MATCHING '}' AND KEEP THE TOKENS UP TO AND
+    // INCLUDING IT, ENDED WITH AN EOF SO THEY CAN BE PARSED ON THEIR OWN
+
+    private List<Token> skipBody() {
+        int start = current;
+        int depth = 1;
+
+        while (depth > 0) {
+            if (isAtEnd()) throw error(peek(), "Expect '}' after block.");
+
+            TokenType type = advance().type;
+            if (type == LEFT_BRACE) depth++;
+            if (type == RIGHT_BRACE) depth--;
+        }
+
+        List<Token> body = new ArrayList<>(tokens.subList(start, current));
+        body.add(new Token(EOF, "", null, previous().line));
+        return body;
+    }
+
+    // PARSE A BODY THE PRE-PARSER SKIPPED
+
+    List<Statement> lazyBody() {
+        return block();
+    }
+
     private Statement varDeclaration() {
         Token name = consume(IDENTIFIER, "Expect variable name.");
 
@@ -94,14 +147,26 @@ public class Parser {
         return new Statement.Var(name, initializer);
     }
 
+    private Statement importDeclaration() {
+        Token keyword = previous();
+        Token path = consume(STRING, "Expect module path after 'import'.");
+        consume(SEMICOLON, "Expect ';' after import.");
+        return new Statement.Import(keyword, (String)path.literal);
+    }
+
     private List<Statement> block() {
         List<Statement> statements = new ArrayList<>();
+        blockDepth++;
 
-        while (!check(RIGHT_BRACE) && !isAtEnd()) {
-            statements.add(declaration());
-        }
+        try {
+            while (!check(RIGHT_BRACE) && !isAtEnd()) {
+                statements.add(declaration());
+            }
 
-        consume(RIGHT_BRACE, "Expect '}' after block.");
+            consume(RIGHT_BRACE, "Expect '}' after block.");
+        } finally {
+            blockDepth--;
+        }
         return statements;
     }
 
@@ -156,6 +221,7 @@ public class Parser {
         consume(RIGHT_PAREN, "Expect ')' after for clauses.");
 
         Statement body = statement();
+        Statement.While.Counted counted = counted(initializer, condition, increment, body);
 
         if (increment != null) {
             body = new Statement.Block(Arrays.asList(
@@ -164,7 +230,9 @@ public class Parser {
         }
 
         if (condition == null) condition = new com.pikl.Expression.LiteralExpression(true);
-        body = new Statement.While(condition, body);
+        Statement.While loop = new Statement.While(condition, body);
+        loop.counted = counted;
+        body = loop;
 
         if (initializer != null) {
             body = new Statement.Block(Arrays.asList(initializer, body));
@@ -173,6 +241,58 @@ public class Parser {
         return body;
     }
 
+    // RECOGNISE for (var i = a; i < b; i = i + 1) WHERE b HAS NO SIDE EFFECTS.
+    // THE INTERPRETER RUNS THESE WITH AN int COUNTER WHILE i AND b STAY INTEGERS
+
+    private Statement.While.Counted counted(Statement initializer, Expression condition,
+                                            Expression increment, Statement body) {
+        if (!(initializer instanceof Statement.Var)) return null;
+        String name = ((Statement.Var)initializer).name.lexeme;
+
+        if (!(condition instanceof Expression.BinaryExpression)) return null;
+        Expression.BinaryExpression test = (Expression.BinaryExpression)condition;
+        TokenType type = test._type.type;
+        if (type != LESS && type != LESS_EQUAL) return null;
+        if (!isVariable(test._left, name) || !isPure(test._right)) return null;
+
+        if (!(increment instanceof Expression.AssignExpression)) return null;
+        Expression.AssignExpression step = (Expression.AssignExpression)increment;
+        if (!step.name.lexeme.equals(name)) return null;
+        if (!(step.value instanceof Expression.BinaryExpression)) return null;
+        Expression.BinaryExpression add = (Expression.BinaryExpression)step.value;
+        if (add._type.type != PLUS || !isVariable(add._left, name)) return null;
+        if (!(add._right instanceof Expression.LiteralExpression)) return null;
+        if (!Integer.valueOf(1).equals(((Expression.LiteralExpression)add._right).value)) return null;
+
+        return new Statement.While.Counted((Expression.VariableExpression)test._left,
+                type == LESS_EQUAL, test._right, body, step);
+    }
+
+    private static boolean isVariable(Expression expr, String name) {
+        return expr instanceof Expression.VariableExpression &&
+                ((Expression.VariableExpression)expr).name.lexeme.equals(name);
+    }
+
+    // CAN BE EVALUATED AGAIN WITHOUT CHANGING ANYTHING
+
+    private static boolean isPure(Expression expr) {
+        if (expr instanceof Expression.LiteralExpression ||
+                expr instanceof Expression.VariableExpression) {
+            return true;
+        }
+        if (expr instanceof Expression.GroupExpression) {
+            return isPure(((Expression.GroupExpression)expr)._left);
+        }
+        if (expr instanceof Expression.UnaryExpression) {
+            return isPure(((Expression.UnaryExpression)expr)._left);
+        }
+        if (expr instanceof Expression.BinaryExpression) {
+            Expression.BinaryExpression binary = (Expression.BinaryExpression)expr;
+            return isPure(binary._left) && isPure(binary._right);
+        }
+        return false;
+    }
+
     private Statement statement() {
         if (match(FOR)) return forStatement();
         if (match(IF)) return ifStatement();
@@ -261,6 +381,11 @@ public class Parser {
                 return new Expression.SetExpression(get.object, get.name, value);
             }
 
+            else if (expr instanceof Expression.IndexExpression) {
+                Expression.IndexExpression index = (Expression.IndexExpression)expr;
+                return new Expression.SetIndexExpression(index.object, index.bracket, index.index, value);
+            }
+
             error(equals, "Invalid assignment target.");
         }
 
@@ -359,6 +484,11 @@ public class Parser {
                 Token name = consume(IDENTIFIER,
                         "Expect property name after '.'.");
                 expr = new Expression.GetExpression(expr, name);
+            } else if (match(LEFT_BRACKET)) {
+                Token bracket = previous();
+                Expression index = expression();
+                consume(RIGHT_BRACKET, "Expect ']' after index.");
+                expr = new Expression.IndexExpression(expr, bracket, index);
             } else {
                 break;
             }
@@ -426,6 +556,7 @@ public class Parser {
     }
 
     private ParseError error(Token token, String message) {
+        failed = true;
         Main.error(token, message);
         return new ParseError();
     }
@@ -440,6 +571,7 @@ public class Parser {
                 case CLASS:
                 case FUN:
                 case VAR:
+                case IMPORT:
                 case FOR:
                 case IF:
                 case WHILE:
@@ -0,0 +1,129 @@
+package com.pikl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+
+    NATIVE BYTE BUFFER
+
+    BACKED BY A DIRECT OR MEMORY MAPPED ByteBuffer SO THE DATA LIVES
+    OUTSIDE THE JAVA HEAP. OFFSETS ARE IN BYTES AND MUST FIT IN 32 BITS,
+    LARGER INTEGERS ARE OUT OF RANGE, SO A SINGLE BUFFER CAN ADDRESS UP TO 2GB
+
+ */
+
+class PklBuffer extends NativeObject {
+
+    private final ByteBuffer buffer;
+
+    private PklBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    static PklBuffer allocate(int size) {
+        return new PklBuffer(ByteBuffer.allocateDirect(size));
+    }
+
+    // MAP A WHOLE FILE READ ONLY, THE CONTENTS ARE PAGED IN ON DEMAND
+
+    static PklBuffer mapRead(String path) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new RuntimeError(null, "File too large to map '" + path + "'.");
+            }
+            return new PklBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to map file '" + path + "'.");
+        }
+    }
+
+    // MAP size BYTES OF A FILE FOR WRITING, CREATING OR EXTENDING IT AS NEEDED
+
+    static PklBuffer mapWrite(String path, int size) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new PklBuffer(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to map file '" + path + "'.");
+        }
+    }
+
+    private int offset(Object value) {
+        return NativeFunction.toInt(value, "Buffer offset");
+    }
+
+    @Override
+    Object get(Token name) {
+        switch (name.lexeme) {
+            case "size":
+                return new NativeFunction("size", 0, (interpreter, arguments) -> buffer.capacity());
+            case "getByte":
+                return new NativeFunction("getByte", 1, (interpreter, arguments) ->
+                        access(() -> buffer.get(offset(arguments.get(0))) & 0xFF));
+            case "getInt":
+                return new NativeFunction("getInt", 1, (interpreter, arguments) ->
+                        access(() -> buffer.getInt(offset(arguments.get(0)))));
+            case "getDouble":
+                return new NativeFunction("getDouble", 1, (interpreter, arguments) ->
+                        access(() -> buffer.getDouble(offset(arguments.get(0)))));
+            case "putByte":
+                return new NativeFunction("putByte", 2, (interpreter, arguments) ->
+                        access(() -> buffer.put(offset(arguments.get(0)),
+                                (byte)NativeFunction.toInt(arguments.get(1), "Byte"))));
+            case "putInt":
+                return new NativeFunction("putInt", 2, (interpreter, arguments) ->
+                        access(() -> buffer.putInt(offset(arguments.get(0)),
+                                NativeFunction.toInt(arguments.get(1), "Value"))));
+            case "putDouble":
+                return new NativeFunction("putDouble", 2, (interpreter, arguments) ->
+                        access(() -> buffer.putDouble(offset(arguments.get(0)),
+                                NativeFunction.toDouble(arguments.get(1), "Value"))));
+            case "littleEndian":
+                return new NativeFunction("littleEndian", 1, (interpreter, arguments) -> {
+                    boolean little = Boolean.TRUE.equals(arguments.get(0));
+                    buffer.order(little ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+                    return null;
+                });
+            case "flush":
+                return new NativeFunction("flush", 0, (interpreter, arguments) -> {
+                    if (buffer instanceof MappedByteBuffer && !buffer.isReadOnly()) {
+                        ((MappedByteBuffer)buffer).force();
+                    }
+                    return null;
+                });
+        }
+
+        return super.get(name);
+    }
+
+    private interface Access {
+        Object run();
+    }
+
+    // BYTES READ BACK UNSIGNED (0-255)
+    // PUTS RETURN THE BUFFER ITSELF, SCRIPTS ONLY SEE nil
+
+    private Object access(Access access) {
+        try {
+            Object result = access.run();
+            return result instanceof ByteBuffer ? null : result;
+        } catch (IndexOutOfBoundsException e) {
+            throw new RuntimeError(null, "Buffer offset out of range.");
+        } catch (ReadOnlyBufferException e) {
+            throw new RuntimeError(null, "Buffer is read only.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<buffer " + buffer.capacity() + ">";
+    }
+}
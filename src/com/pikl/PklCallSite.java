@@ -0,0 +1,156 @@
+package com.pikl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Arrays;
+
+/*
+
+    INLINE CACHE FOR ONE CALL OR INVOKE IN JIT GENERATED CODE
+
+    EVERY SITE IS HELD IN A static final FIELD OF THE GENERATED CLASS AS
+    ITS dynamicInvoker(), SO HOTSPOT TREATS IT AS A CONSTANT AND INLINES
+    THROUGH THE CURRENT TARGET. THE SITE STARTS OUT POINTING AT fallback.
+    EVERY MISS PUTS A GUARD FOR THAT CALLEE IN FRONT OF THE CURRENT TARGET:
+
+        guard(callee) ? direct call : (previous target ... fallback)
+
+    THE ARGUMENT COUNT OF A SITE NEVER CHANGES, SO A HIT SKIPS THE Callable
+    AND ARITY CHECKS. FUNCTIONS ARE GUARDED ON THEIR DECLARATION, NOT THE
+    PklFunction OBJECT, SINCE EVERY METHOD LOOKUP BINDS A NEW ONE. ANYTHING
+    ELSE IS GUARDED ON IDENTITY. AFTER MAX_TARGETS CALLEES THE SITE GIVES
+    UP AND GOES STRAIGHT TO JitRuntime.call
+
+    A FUNCTION THAT ALREADY HAS JIT CODE IS LINKED WITH THAT JitCode BOUND
+    IN, SO ITS run IS A CALL ON A CONSTANT AND CAN BE INLINED. ONE LINKED
+    BEFORE IT HAD CODE UNLINKS THE SITE ONCE THE CODE SHOWS UP
+
+ */
+
+final class PklCallSite extends MutableCallSite {
+
+    private static final int MAX_TARGETS = 4;
+
+    static final MethodType TYPE = MethodType.methodType(
+            Object.class, Interpreter.class, Object.class, Object[].class);
+
+    private static final MethodHandle FALLBACK;
+    private static final MethodHandle UNCOMPILED;
+    private static final MethodHandle COMPILED;
+    private static final MethodHandle NATIVE;
+    private static final MethodHandle GENERIC;
+    private static final MethodHandle SAME_CALLEE;
+    private static final MethodHandle SAME_DECLARATION;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            FALLBACK = lookup.findVirtual(PklCallSite.class, "fallback", TYPE);
+            UNCOMPILED = lookup.findVirtual(PklCallSite.class, "uncompiled", TYPE);
+            COMPILED = lookup.findStatic(PklCallSite.class, "compiled",
+                    TYPE.insertParameterTypes(0, JitCode.class, Token.class));
+            NATIVE = lookup.findStatic(PklCallSite.class, "callable",
+                    TYPE.insertParameterTypes(0, Token.class));
+            GENERIC = lookup.findStatic(JitRuntime.class, "call",
+                    MethodType.methodType(Object.class, Interpreter.class, Object.class, Object.class, Object[].class));
+            SAME_CALLEE = lookup.findStatic(PklCallSite.class, "sameCallee",
+                    MethodType.methodType(boolean.class, Object.class, Interpreter.class, Object.class));
+            SAME_DECLARATION = lookup.findStatic(PklCallSite.class, "sameDeclaration",
+                    MethodType.methodType(boolean.class, Statement.Function.class, Interpreter.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Token paren;
+    private final int count;
+    private int targets = 0;
+
+    PklCallSite(Token paren, int count) {
+        super(TYPE);
+        this.paren = paren;
+        this.count = count;
+        setTarget(FALLBACK.bindTo(this));
+    }
+
+    private Object fallback(Interpreter interpreter, Object callee, Object[] arguments) {
+        Stats.cacheMisses++;
+
+        // LINK BEFORE CALLING SO RECURSIVE CALLS THROUGH THIS SITE ALREADY HIT
+        if (callee instanceof Callable && ((Callable)callee).arity() == count) {
+            link(callee);
+        }
+
+        return JitRuntime.call(interpreter, paren, callee, arguments);
+    }
+
+    private void link(Object callee) {
+        if (++targets > MAX_TARGETS) {
+            setTarget(MethodHandles.insertArguments(GENERIC, 1, paren));
+            return;
+        }
+
+        MethodHandle guard;
+        MethodHandle direct;
+        if (callee instanceof PklFunction) {
+            Statement.Function declaration = ((PklFunction)callee).declaration;
+            guard = MethodHandles.insertArguments(SAME_DECLARATION, 0, declaration);
+            direct = declaration.jitCode != null
+                    ? MethodHandles.insertArguments(COMPILED, 0, declaration.jitCode, paren)
+                    : UNCOMPILED.bindTo(this);
+        } else {
+            guard = MethodHandles.insertArguments(SAME_CALLEE, 0, callee);
+            direct = MethodHandles.insertArguments(NATIVE, 0, paren);
+        }
+
+        setTarget(MethodHandles.guardWithTest(guard, direct, getTarget()));
+    }
+
+    private static boolean sameCallee(Object expected, Interpreter interpreter, Object callee) {
+        return callee == expected;
+    }
+
+    private static boolean sameDeclaration(Statement.Function expected, Interpreter interpreter, Object callee) {
+        return callee instanceof PklFunction && ((PklFunction)callee).declaration == expected;
+    }
+
+    private Object uncompiled(Interpreter interpreter, Object callee, Object[] arguments) {
+        if (((PklFunction)callee).declaration.jitCode != null) {
+            targets = 0;
+            setTarget(FALLBACK.bindTo(this));
+            return fallback(interpreter, callee, arguments);
+        }
+
+        Stats.cacheHits++;
+        return JitRuntime.call(interpreter, paren, callee, arguments);
+    }
+
+    // PAST THE NESTING LIMIT UNDER THE REGISTER VM, THE CALL GOES TO THE
+    // VM'S LOOP LIKE ANY CALL WITHOUT CODE, SEE JitCompiler
+
+    private static Object compiled(JitCode code, Token paren, Interpreter interpreter, Object callee, Object[] arguments) {
+        Stats.cacheHits++;
+        if (interpreter.jit.nesting >= JitCompiler.MAX_NESTING && interpreter.vm != null) {
+            return invoke(paren, interpreter, callee, arguments);
+        }
+        Stats.functionCalls++;
+        return ((PklFunction)callee).call(interpreter, code, arguments);
+    }
+
+    private static Object callable(Token paren, Interpreter interpreter, Object callee, Object[] arguments) {
+        Stats.cacheHits++;
+        return invoke(paren, interpreter, callee, arguments);
+    }
+
+    private static Object invoke(Token paren, Interpreter interpreter, Object callee, Object[] arguments) {
+        try {
+            return ((Callable)callee).call(interpreter, Arrays.asList(arguments));
+        } catch (RuntimeError error) {
+            // SAME AS Operators.call, NATIVES DON'T KNOW WHERE THEY WERE CALLED FROM
+            if (error.token != null) throw error;
+            throw new RuntimeError(paren, error.getMessage());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.pikl;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -9,10 +10,26 @@ class PklClass implements Callable {
     private final Map<String, PklFunction> methods;
     final PklClass superclass;
 
+    // EVERY METHOD AN INSTANCE RESPONDS TO, INHERITED ONES COPIED DOWN AND
+    // OVERRIDDEN BY THIS CLASS'S OWN, SO LOOKUP IS ONE PROBE AT ANY DEPTH
+    private Map<String, PklFunction> table;
+
     PklClass(String name, PklClass superclass, Map<String, PklFunction> methods) {
         this.name = name;
         this.superclass = superclass;
         this.methods = methods;
+        flatten();
+    }
+
+    // BUILD THE TABLE. A SNAPSHOT FILLS methods AFTER CONSTRUCTION AND
+    // CALLS THIS AGAIN, SUPERCLASSES FIRST
+
+    void flatten() {
+        Map<String, PklFunction> table = superclass == null
+                ? new HashMap<String, PklFunction>()
+                : new HashMap<>(superclass.table);
+        table.putAll(methods);
+        this.table = table;
     }
 
     @Override
@@ -20,25 +37,25 @@ class PklClass implements Callable {
         return name;
     }
 
-    PklFunction findMethod(PklInstance instance, String name) {
-
-        //check local first
-        if (methods.containsKey(name)) {
-            return methods.get(name).bind(instance);
-        }
+    Map<String, PklFunction> methods() {
+        return methods;
+    }
 
-        // check global scope if we don't find it
-        if (superclass != null) {
-            return superclass.findMethod(instance, name);
-        }
+    PklFunction lookup(String name) {
+        return table.get(name);
+    }
 
-        return null;
+    PklFunction findMethod(PklInstance instance, String name) {
+        PklFunction method = table.get(name);
+        if (method == null) return null;
+        return method.bind(instance);
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
 
         PklInstance instance = new PklInstance(this);
+        Stats.instancesAllocated++;
 
         PklFunction initializer = methods.get("init");
         if (initializer != null) {
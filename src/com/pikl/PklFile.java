@@ -0,0 +1,222 @@
+package com.pikl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+
+    STREAMING FILE HANDLE FOR THE I/O NATIVES
+
+    ALL READS GO THROUGH ONE REUSED 64K BUFFER AND LINES ARE ASSEMBLED
+    IN A REUSED BYTE ARRAY, SO READING A FILE LINE BY LINE ONLY EVER HOLDS
+    THE CURRENT LINE IN MEMORY. WRITES ARE BUFFERED THE SAME WAY
+
+ */
+
+class PklFile extends NativeObject {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // FILES STILL OPEN WHEN THE PROGRAM ENDS ARE FLUSHED AND CLOSED BY closeAll
+    private static final Set<PklFile> open = new HashSet<>();
+
+    private final String path;
+    private final FileChannel channel;
+
+    private ByteBuffer in;
+    private ByteBuffer out;
+    private boolean eof = false;
+
+    private byte[] line = new byte[256];
+    private CharsetDecoder decoder;
+    private CharBuffer chunk;
+
+    private PklFile(String path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+        open.add(this);
+    }
+
+    static PklFile openRead(String path) {
+        try {
+            PklFile file = new PklFile(path, FileChannel.open(Paths.get(path), StandardOpenOption.READ));
+            file.in = ByteBuffer.allocate(BUFFER_SIZE);
+            file.in.flip();
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to open file '" + path + "'.");
+        }
+    }
+
+    static PklFile openWrite(String path) {
+        try {
+            PklFile file = new PklFile(path, FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+            file.out = ByteBuffer.allocate(BUFFER_SIZE);
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to open file '" + path + "'.");
+        }
+    }
+
+    static PklFile check(Object value) {
+        if (value instanceof PklFile) return (PklFile)value;
+        throw new RuntimeError(null, "Expected a file.");
+    }
+
+    static void closeAll() {
+        for (PklFile file : open.toArray(new PklFile[0])) {
+            file.close();
+        }
+    }
+
+    // READ THE NEXT LINE WITHOUT ITS TERMINATOR, nil AT END OF FILE
+
+    String readLine() {
+        readable();
+
+        int length = 0;
+        boolean found = false;
+
+        while (true) {
+            if (!in.hasRemaining() && fill() < 0) break;
+
+            byte[] bytes = in.array();
+            int start = in.position();
+            int limit = in.limit();
+
+            int i = start;
+            while (i < limit && bytes[i] != '\n') i++;
+
+            if (length + (i - start) > line.length) {
+                byte[] grown = new byte[Math.max(line.length * 2, length + (i - start))];
+                System.arraycopy(line, 0, grown, 0, length);
+                line = grown;
+            }
+            System.arraycopy(bytes, start, line, length, i - start);
+            length += i - start;
+
+            if (i < limit) {
+                in.position(i + 1);
+                found = true;
+                break;
+            }
+
+            in.position(limit);
+        }
+
+        if (!found && length == 0) return null;
+
+        if (length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // READ UP TO count CHARACTERS, nil AT END OF FILE
+    // A MULTI BYTE CHARACTER IS NEVER SPLIT ACROSS TWO CHUNKS
+    // ASKING FOR 0 CHARACTERS GIVES "", WHICH CAN'T BE MISTAKEN FOR END OF FILE
+
+    String readChunk(int count) {
+        readable();
+        if (count == 0) return "";
+
+        if (decoder == null) {
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        if (chunk == null || chunk.capacity() < count) {
+            chunk = CharBuffer.allocate(count);
+        }
+
+        chunk.clear();
+        chunk.limit(count);
+
+        while (chunk.hasRemaining()) {
+            decoder.decode(in, chunk, eof);
+            if (!chunk.hasRemaining() || eof) break;
+            if (fill() < 0) {
+                decoder.decode(in, chunk, true);
+                break;
+            }
+        }
+
+        chunk.flip();
+        if (!chunk.hasRemaining()) return null;
+        return chunk.toString();
+    }
+
+    void write(String text) {
+        if (out == null) throw new RuntimeError(null, "File '" + path + "' is not open for writing.");
+        if (!open.contains(this)) throw new RuntimeError(null, "File '" + path + "' is closed.");
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (bytes.length > out.remaining()) {
+                flush();
+            }
+
+            if (bytes.length > out.capacity()) {
+                ByteBuffer direct = ByteBuffer.wrap(bytes);
+                while (direct.hasRemaining()) channel.write(direct);
+            } else {
+                out.put(bytes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to write file '" + path + "'.");
+        }
+    }
+
+    void close() {
+        if (!open.remove(this)) return;
+
+        try {
+            if (out != null) flush();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to close file '" + path + "'.");
+        }
+    }
+
+    private void readable() {
+        if (in == null) throw new RuntimeError(null, "File '" + path + "' is not open for reading.");
+        if (!open.contains(this)) throw new RuntimeError(null, "File '" + path + "' is closed.");
+    }
+
+    // KEEP ANY UNCONSUMED BYTES AND TOP THE BUFFER UP FROM THE CHANNEL
+
+    private int fill() {
+        if (eof) return -1;
+
+        try {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+
+            if (read < 0) eof = true;
+            return read;
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Unable to read file '" + path + "'.");
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "<file " + path + ">";
+    }
+}
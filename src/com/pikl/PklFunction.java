@@ -1,12 +1,13 @@
 package com.pikl;
 
+import java.util.Arrays;
 import java.util.List;
 
 class PklFunction implements Callable {
 
-    private final Statement.Function declaration;
-    private final Environment closure;
-    private final boolean isInitializer;
+    final Statement.Function declaration;
+    final Environment closure;
+    final boolean isInitializer;
 
     PklFunction(Statement.Function declaration, Environment closure, boolean isInitializer) {
         this.isInitializer = isInitializer;
@@ -17,6 +18,36 @@ class PklFunction implements Callable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
 
+        Stats.functionCalls++;
+
+        Resolver.complete(declaration);
+
+        if (interpreter.jit != null) {
+            JitCode code = interpreter.jit.enter(declaration);
+            if (code != null) return call(interpreter, code, arguments.toArray());
+        }
+
+        if (interpreter.vm == null && declaration.frameSize >= 0) {
+            int base = interpreter.sp;
+            interpreter.reserve(base + arguments.size());
+            for (int i = 0; i < arguments.size(); i++) {
+                interpreter.stack[base + i] = arguments.get(i);
+            }
+            interpreter.sp = base + arguments.size();
+            return callFrame(interpreter, base);
+        }
+
+        if (interpreter.vm != null) {
+            Chunk chunk = interpreter.vm.compile(declaration);
+            if (chunk != null) {
+                Object[] registers = new Object[chunk.registers];
+                for (int i = 0; i < arguments.size(); i++) {
+                    registers[i] = arguments.get(i);
+                }
+                return call(interpreter, chunk, registers);
+            }
+        }
+
         Environment environment = new Environment(closure);
 
         for (int i = 0; i < declaration.parameters.size(); i++) {
@@ -24,18 +55,78 @@ class PklFunction implements Callable {
                     arguments.get(i));
         }
 
+        Statement.Function caller = interpreter.currentFunction;
+        interpreter.currentFunction = declaration;
+
         try {
             interpreter.executeBlock(declaration.body, environment);
         } catch (Return returnValue) {
             if (isInitializer) return closure.getAt(0, "this");
 
             return returnValue.value;
+        } finally {
+            interpreter.currentFunction = caller;
         }
 
         if (isInitializer) return closure.getAt(0, "this");
         return null;
     }
 
+    // RUN THE BODY ON THE FRAME STACK, THE ARGUMENTS ARE ALREADY IN
+    // stack[base ..]. THE BODY RUNS DIRECTLY IN closure, ITS LOCALS ARE SLOTS
+
+    Object callFrame(Interpreter interpreter, int base) {
+        int size = declaration.frameSize;
+        interpreter.reserve(base + size);
+
+        int callerFp = interpreter.fp;
+        Statement.Function caller = interpreter.currentFunction;
+        interpreter.fp = base;
+        interpreter.sp = base + size;
+        interpreter.currentFunction = declaration;
+
+        try {
+            interpreter.executeBlock(declaration.body, closure);
+        } catch (Return returnValue) {
+            if (isInitializer) return closure.getAt(0, "this");
+
+            return returnValue.value;
+        } finally {
+            // DROP THE FRAME SO IT HOLDS NOTHING ALIVE
+            Arrays.fill(interpreter.stack, base, base + size, null);
+            interpreter.fp = callerFp;
+            interpreter.sp = base;
+            interpreter.currentFunction = caller;
+        }
+
+        if (isInitializer) return closure.getAt(0, "this");
+        return null;
+    }
+
+    // RUN THE COMPILED BODY, THE FIRST REGISTERS ALREADY HOLD THE ARGUMENTS
+
+    Object call(Interpreter interpreter, Chunk chunk, Object[] registers) {
+        Object value = interpreter.vm.execute(chunk, closure, registers);
+
+        if (isInitializer) return closure.getAt(0, "this");
+        return value;
+    }
+
+    // RUN THE JIT'S CODE FOR THIS FUNCTION
+
+    Object call(Interpreter interpreter, JitCode code, Object[] arguments) {
+        Object value;
+        interpreter.jit.nesting++;
+        try {
+            value = code.run(interpreter, closure, arguments);
+        } finally {
+            interpreter.jit.nesting--;
+        }
+
+        if (isInitializer) return closure.getAt(0, "this");
+        return value;
+    }
+
     @Override
     public int arity() {
         return declaration.parameters.size();
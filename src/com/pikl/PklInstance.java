@@ -13,14 +13,25 @@ public class PklInstance {
         this.klass = klass;
     }
 
+    PklClass klass() {
+        return klass;
+    }
+
+    Map<String, Object> fields() {
+        return fields;
+    }
+
     @Override
     public String toString() {
         return klass.name + " instance";
     }
 
     Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        Stats.propertyLookups++;
+
+        Object value = fields.get(name.lexeme);
+        if (value != null || fields.containsKey(name.lexeme)) {
+            return value;
         }
         PklFunction method = klass.findMethod(this, name.lexeme);
         if (method != null) return method;
@@ -0,0 +1,219 @@
+package com.pikl;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/*
+
+    NATIVE LIST TYPE
+
+    ELEMENTS ARE STORED UNBOXED FOR AS LONG AS POSSIBLE:
+        INTS     -> int[]
+        DOUBLES  -> double[]
+        ANYTHING -> Object[]
+
+    A LIST ONLY STAYS UNBOXED WHILE EVERY ELEMENT HAS THE SAME TYPE. AN
+    EMPTY LIST TAKES THE TYPE OF ITS FIRST ELEMENT, ANY OTHER VALUE OF
+    ANOTHER TYPE MOVES IT TO OBJECTS ONCE, KEEPING EACH ELEMENT AS IT WAS.
+    IT NEVER NARROWS AGAIN
+
+    A DoubleArray IS THE EXCEPTION, IT HOLDS DOUBLES ON PURPOSE SO Integers
+    AND Longs STORED IN IT ARE CONVERTED INSTEAD OF BOXING THE WHOLE ARRAY
+
+ */
+
+class PklList extends NativeObject {
+
+    private enum Kind {
+        INTS,
+        DOUBLES,
+        OBJECTS
+    }
+
+    private Kind kind;
+
+    // MADE BY DoubleArray, SEE widenFor
+    private boolean numeric;
+
+    private int[] ints;
+    private double[] doubles;
+    private Object[] objects;
+
+    private int size;
+
+    private PklList(Kind kind, int capacity) {
+        this.kind = kind;
+        switch (kind) {
+            case INTS: ints = new int[capacity]; break;
+            case DOUBLES: doubles = new double[capacity]; break;
+            case OBJECTS: objects = new Object[capacity]; break;
+        }
+    }
+
+    static PklList empty() {
+        return new PklList(Kind.INTS, 8);
+    }
+
+    static PklList intArray(int length) {
+        PklList list = new PklList(Kind.INTS, Math.max(length, 8));
+        list.size = length;
+        return list;
+    }
+
+    static PklList doubleArray(int length) {
+        PklList list = new PklList(Kind.DOUBLES, Math.max(length, 8));
+        list.numeric = true;
+        list.size = length;
+        return list;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // STORAGE KIND AS A NUMBER, SO A SNAPSHOT CAN RECREATE THE SAME LIST
+    // A DoubleArray THAT IS STILL UNBOXED IS ONE PAST THE LAST Kind
+
+    private static final int NUMERIC = Kind.values().length;
+
+    int storage() {
+        if (numeric && kind == Kind.DOUBLES) return NUMERIC;
+        return kind.ordinal();
+    }
+
+    static PklList withStorage(int storage, int capacity) {
+        if (storage == NUMERIC) {
+            PklList list = new PklList(Kind.DOUBLES, Math.max(capacity, 8));
+            list.numeric = true;
+            return list;
+        }
+        return new PklList(Kind.values()[storage], Math.max(capacity, 8));
+    }
+
+    Object get(int index) {
+        switch (kind) {
+            case INTS: return ints[index];
+            case DOUBLES: return doubles[index];
+            default: return objects[index];
+        }
+    }
+
+    void set(int index, Object value) {
+        widenFor(value);
+
+        switch (kind) {
+            case INTS: ints[index] = (int)value; break;
+            case DOUBLES: doubles[index] = ((Number)value).doubleValue(); break;
+            default: objects[index] = value; break;
+        }
+    }
+
+    void append(Object value) {
+        widenFor(value);
+        if (size == capacity()) grow();
+        size++;
+        set(size - 1, value);
+    }
+
+    private Object pop() {
+        if (size == 0) throw new RuntimeError(null, "Cannot pop from an empty list.");
+        Object value = get(size - 1);
+        if (kind == Kind.OBJECTS) objects[size - 1] = null;
+        size--;
+        return value;
+    }
+
+    private int capacity() {
+        switch (kind) {
+            case INTS: return ints.length;
+            case DOUBLES: return doubles.length;
+            default: return objects.length;
+        }
+    }
+
+    // AMORTISED GROWTH, DOUBLE THE BACKING ARRAY WHEN FULL
+
+    private void grow() {
+        int capacity = Math.max(capacity() * 2, 8);
+        switch (kind) {
+            case INTS: ints = Arrays.copyOf(ints, capacity); break;
+            case DOUBLES: doubles = Arrays.copyOf(doubles, capacity); break;
+            case OBJECTS: objects = Arrays.copyOf(objects, capacity); break;
+        }
+    }
+
+    private void widenFor(Object value) {
+        if (kind == Kind.OBJECTS) return;
+        if (kind == Kind.INTS && value instanceof Integer) return;
+        if (kind == Kind.DOUBLES && value instanceof Double) return;
+        if (kind == Kind.DOUBLES && numeric && (value instanceof Integer || value instanceof Long)) return;
+
+        // NOTHING STORED YET, A List() OF DOUBLES CAN STILL BE UNBOXED
+        if (size == 0 && kind == Kind.INTS && value instanceof Double) {
+            doubles = new double[ints.length];
+            ints = null;
+            kind = Kind.DOUBLES;
+            return;
+        }
+
+        objects = new Object[capacity()];
+        for (int i = 0; i < size; i++) objects[i] = get(i);
+        ints = null;
+        doubles = null;
+        kind = Kind.OBJECTS;
+    }
+
+    private int checkIndex(Token bracket, Object index) {
+        if (index instanceof Long || index instanceof BigInteger) {
+            throw new RuntimeError(bracket, "List index out of range.");
+        }
+        if (!(index instanceof Integer)) {
+            throw new RuntimeError(bracket, "List index must be an integer.");
+        }
+
+        int i = (int)index;
+        if (i < 0 || i >= size) {
+            throw new RuntimeError(bracket, "List index out of range.");
+        }
+
+        return i;
+    }
+
+    @Override
+    Object getIndex(Token bracket, Object index) {
+        return get(checkIndex(bracket, index));
+    }
+
+    @Override
+    void setIndex(Token bracket, Object index, Object value) {
+        set(checkIndex(bracket, index), value);
+    }
+
+    @Override
+    Object get(Token name) {
+        switch (name.lexeme) {
+            case "append":
+                return new NativeFunction("append", 1, (interpreter, arguments) -> {
+                    append(arguments.get(0));
+                    return null;
+                });
+            case "pop":
+                return new NativeFunction("pop", 0, (interpreter, arguments) -> pop());
+            case "length":
+                return new NativeFunction("length", 0, (interpreter, arguments) -> size);
+        }
+
+        return super.get(name);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            Object value = get(i);
+            builder.append(value == null ? "nil" : value.toString());
+        }
+        return builder.append("]").toString();
+    }
+}
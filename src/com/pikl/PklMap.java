@@ -0,0 +1,373 @@
+package com.pikl;
+
+/*
+
+    NATIVE MAP TYPE
+
+    AN OPEN ADDRESSING TABLE WITH LINEAR PROBING, NO ENTRY OBJECTS.
+    THE FIRST KEY PICKS THE KEY STORAGE:
+        INT KEYS     -> int[] (NO BOXING)
+        STRING KEYS  -> String[] OF INTERNED STRINGS
+        ANYTHING     -> Object[]
+
+    A KEY OF ANOTHER KIND MOVES THE TABLE TO Object[] KEYS ONCE.
+    REMOVAL USES BACKWARD SHIFTING SO THERE ARE NO TOMBSTONES
+
+ */
+
+class PklMap extends NativeObject {
+
+    private enum Kind {
+        EMPTY,
+        INTS,
+        STRINGS,
+        OBJECTS
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Kind kind = Kind.EMPTY;
+
+    private int[] intKeys;
+    private boolean[] used;            // ONLY NEEDED FOR INT KEYS, EVERY int IS A VALID KEY
+    private String[] stringKeys;
+    private Object[] objectKeys;
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    private int size = 0;
+    private int mask = INITIAL_CAPACITY - 1;
+
+    int size() {
+        return size;
+    }
+
+    Object get(Object key) {
+        int slot = find(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    boolean has(Object key) {
+        return find(key) >= 0;
+    }
+
+    void put(Object key, Object value) {
+        int slot = insert(key);
+        values[slot] = value;
+    }
+
+    // ADD A NUMBER TO THE VALUE STORED UNDER key (MISSING KEYS COUNT AS 0)
+    // SO COUNTING DOESN'T NEED A has/get/put ROUND TRIP FROM THE SCRIPT
+
+    Object add(Object key, Object amount) {
+        int slot = find(key);
+        Object current = slot < 0 ? null : values[slot];
+
+        Object base = current == null ? (Object)0 : current;
+        if (!Operators.isNumber(base)) throw new RuntimeError(null, "Map value must be a number.");
+        if (!Operators.isNumber(amount)) throw new RuntimeError(null, "Amount must be a number.");
+        Object result = Operators.addNumbers(base, amount);
+
+        if (slot >= 0) {
+            values[slot] = result;
+        } else {
+            put(key, result);
+        }
+        return result;
+    }
+
+    Object remove(Object key) {
+        int slot = find(key);
+        if (slot < 0) return null;
+
+        Object value = values[slot];
+        clear(slot);
+        size--;
+
+        // SHIFT BACK ANY ENTRIES THAT PROBED PAST THE HOLE
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (occupied(i)) {
+            int home = hash(keyAt(i)) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+
+        return value;
+    }
+
+    PklList keys() {
+        PklList list = PklList.empty();
+        for (int i = 0; i <= mask; i++) {
+            if (occupied(i)) list.append(keyAt(i));
+        }
+        return list;
+    }
+
+    PklList values() {
+        PklList list = PklList.empty();
+        for (int i = 0; i <= mask; i++) {
+            if (occupied(i)) list.append(values[i]);
+        }
+        return list;
+    }
+
+    private int find(Object key) {
+        switch (kind) {
+            case INTS:
+                if (!(key instanceof Integer)) return -1;
+                return findInt((int)key);
+            case STRINGS:
+                if (!(key instanceof String)) return -1;
+                return findString((String)key);
+            case OBJECTS:
+                return findObject(key);
+            default:
+                return -1;
+        }
+    }
+
+    private int findInt(int key) {
+        int i = mix(key) & mask;
+        while (used[i]) {
+            if (intKeys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int findString(String key) {
+        int i = mix(key.hashCode()) & mask;
+        String k;
+        while ((k = stringKeys[i]) != null) {
+            if (k == key || k.equals(key)) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int findObject(Object key) {
+        int i = hash(key) & mask;
+        Object k;
+        while ((k = objectKeys[i]) != null) {
+            if (k.equals(key)) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    // RETURN THE SLOT FOR key, CLAIMING A NEW ONE IF IT ISN'T PRESENT
+
+    private int insert(Object key) {
+        if (key == null) throw new RuntimeError(null, "Map key cannot be nil.");
+
+        if (kind == Kind.EMPTY) {
+            kind = key instanceof Integer ? Kind.INTS
+                    : key instanceof String ? Kind.STRINGS
+                    : Kind.OBJECTS;
+            allocate(values.length);
+        } else if ((kind == Kind.INTS && !(key instanceof Integer)) ||
+                (kind == Kind.STRINGS && !(key instanceof String))) {
+            rehash(Kind.OBJECTS, values.length);
+        }
+
+        int slot = find(key);
+        if (slot >= 0) return slot;
+
+        // KEEP THE LOAD FACTOR BELOW 0.6
+        if ((size + 1) * 5 > values.length * 3) {
+            rehash(kind, values.length * 2);
+        }
+
+        size++;
+
+        switch (kind) {
+            case INTS: {
+                int k = (int)key;
+                int i = mix(k) & mask;
+                while (used[i]) i = (i + 1) & mask;
+                used[i] = true;
+                intKeys[i] = k;
+                return i;
+            }
+            case STRINGS: {
+                String k = ((String)key).intern();
+                int i = mix(k.hashCode()) & mask;
+                while (stringKeys[i] != null) i = (i + 1) & mask;
+                stringKeys[i] = k;
+                return i;
+            }
+            default: {
+                int i = hash(key) & mask;
+                while (objectKeys[i] != null) i = (i + 1) & mask;
+                objectKeys[i] = key;
+                return i;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        intKeys = null;
+        used = null;
+        stringKeys = null;
+        objectKeys = null;
+
+        switch (kind) {
+            case INTS:
+                intKeys = new int[capacity];
+                used = new boolean[capacity];
+                break;
+            case STRINGS:
+                stringKeys = new String[capacity];
+                break;
+            default:
+                objectKeys = new Object[capacity];
+                break;
+        }
+
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(Kind newKind, int capacity) {
+        Kind oldKind = kind;
+        int[] oldInts = intKeys;
+        boolean[] oldUsed = used;
+        String[] oldStrings = stringKeys;
+        Object[] oldObjects = objectKeys;
+        Object[] oldValues = values;
+
+        kind = newKind;
+        allocate(capacity);
+        size = 0;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            Object key;
+            switch (oldKind) {
+                case INTS:
+                    if (!oldUsed[i]) continue;
+                    key = oldInts[i];
+                    break;
+                case STRINGS:
+                    key = oldStrings[i];
+                    break;
+                default:
+                    key = oldObjects[i];
+                    break;
+            }
+
+            if (key != null) put(key, oldValues[i]);
+        }
+    }
+
+    private boolean occupied(int i) {
+        switch (kind) {
+            case INTS: return used[i];
+            case STRINGS: return stringKeys[i] != null;
+            case OBJECTS: return objectKeys[i] != null;
+            default: return false;
+        }
+    }
+
+    private Object keyAt(int i) {
+        switch (kind) {
+            case INTS: return intKeys[i];
+            case STRINGS: return stringKeys[i];
+            default: return objectKeys[i];
+        }
+    }
+
+    private void move(int from, int to) {
+        switch (kind) {
+            case INTS:
+                intKeys[to] = intKeys[from];
+                used[to] = true;
+                break;
+            case STRINGS:
+                stringKeys[to] = stringKeys[from];
+                break;
+            default:
+                objectKeys[to] = objectKeys[from];
+                break;
+        }
+        values[to] = values[from];
+        clear(from);
+    }
+
+    private void clear(int i) {
+        switch (kind) {
+            case INTS: used[i] = false; break;
+            case STRINGS: stringKeys[i] = null; break;
+            default: objectKeys[i] = null; break;
+        }
+        values[i] = null;
+    }
+
+    // nil IS NEVER STORED, BUT CAN STILL BE LOOKED UP
+    private static int hash(Object key) {
+        if (key == null) return 0;
+        if (key instanceof Integer) return mix((int)key);
+        return mix(key.hashCode());
+    }
+
+    // SPREAD THE BITS SO SEQUENTIAL KEYS DON'T CLUSTER UNDER LINEAR PROBING
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    Object getIndex(Token bracket, Object index) {
+        return get(index);
+    }
+
+    @Override
+    void setIndex(Token bracket, Object index, Object value) {
+        if (index == null) throw new RuntimeError(bracket, "Map key cannot be nil.");
+        put(index, value);
+    }
+
+    @Override
+    Object get(Token name) {
+        switch (name.lexeme) {
+            case "get":
+                return new NativeFunction("get", 1, (interpreter, arguments) -> get(arguments.get(0)));
+            case "put":
+                return new NativeFunction("put", 2, (interpreter, arguments) -> {
+                    put(arguments.get(0), arguments.get(1));
+                    return null;
+                });
+            case "has":
+                return new NativeFunction("has", 1, (interpreter, arguments) -> has(arguments.get(0)));
+            case "remove":
+                return new NativeFunction("remove", 1, (interpreter, arguments) -> remove(arguments.get(0)));
+            case "add":
+                return new NativeFunction("add", 2, (interpreter, arguments) -> add(arguments.get(0), arguments.get(1)));
+            case "size":
+                return new NativeFunction("size", 0, (interpreter, arguments) -> size);
+            case "keys":
+                return new NativeFunction("keys", 0, (interpreter, arguments) -> keys());
+            case "values":
+                return new NativeFunction("values", 0, (interpreter, arguments) -> values());
+        }
+
+        return super.get(name);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        boolean first = true;
+        for (int i = 0; i <= mask; i++) {
+            if (!occupied(i)) continue;
+            if (!first) builder.append(", ");
+            first = false;
+            Object value = values[i];
+            builder.append(keyAt(i)).append(": ").append(value == null ? "nil" : value.toString());
+        }
+        return builder.append("}").toString();
+    }
+}
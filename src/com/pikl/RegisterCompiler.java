@@ -0,0 +1,570 @@
+package com.pikl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    COMPILES A RESOLVED FUNCTION BODY TO REGISTER VM CODE
+
+    PARAMETERS AND LOCALS LIVE IN FRAME REGISTERS, TEMPORARIES ARE
+    ALLOCATED ABOVE THEM AND RELEASED AT THE END OF EACH STATEMENT.
+    VARIABLES FROM ENCLOSING FUNCTIONS ARE READ THROUGH THE CLOSURE USING
+    THE DEPTHS THE RESOLVER RECORDED, EVERYTHING ELSE IS GLOBAL.
+
+    A FUNCTION THAT DECLARES FUNCTIONS OR CLASSES IS NOT COMPILED, ITS
+    LOCALS CAN BE CAPTURED SO THEY HAVE TO STAY IN ENVIRONMENTS
+
+ */
+
+class RegisterCompiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+
+    private static class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Interpreter interpreter;
+
+    private int[] code = new int[64];
+    private Token[] tokens = new Token[64];
+    private int count = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+
+    // FIRST FREE REGISTER, REGISTERS BELOW locals HOLD DECLARED VARIABLES
+    private int top = 0;
+    private int locals = 0;
+    private int maxRegisters = 0;
+
+    // REGISTER THE EXPRESSION BEING VISITED MUST LEAVE ITS VALUE IN
+    private int target;
+
+    RegisterCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    // RETURNS null IF THE BODY USES SOMETHING THE VM CAN'T RUN
+
+    Chunk compile(Statement.Function function) {
+        try {
+            beginScope();
+            for (Token param : function.parameters) {
+                declare(param.lexeme, allocate());
+            }
+
+            for (Statement statement : function.body) {
+                statement(statement);
+            }
+
+            emit(null, OpCode.RETURN_NIL);
+
+            return new Chunk(Arrays.copyOf(code, count), constants.toArray(),
+                    Arrays.copyOf(tokens, count), function.parameters.size(), maxRegisters);
+        } catch (Unsupported unsupported) {
+            return null;
+        }
+    }
+
+    // STATEMENTS
+
+    private void statement(Statement statement) {
+        int mark = top;
+        statement.accept(this);
+
+        // var DECLARATIONS KEEP THEIR REGISTER, ANY TEMPORARIES ARE RELEASED
+        top = Math.max(mark, locals);
+    }
+
+    @Override
+    public Void visitBlockStmt(Statement.Block stmt) {
+        beginScope();
+        for (Statement statement : stmt.statements) {
+            statement(statement);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Statement.Class stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitExpressionStmt(Statement.Expression stmt) {
+
+        // SUPERINSTRUCTION: local = local + number
+        if (stmt.expression instanceof Expression.AssignExpression) {
+            Expression.AssignExpression assign = (Expression.AssignExpression)stmt.expression;
+            Integer register = local(assign.name.lexeme);
+
+            if (register != null && assign.value instanceof Expression.BinaryExpression) {
+                Expression.BinaryExpression binary = (Expression.BinaryExpression)assign.value;
+
+                if (binary._type.type == TokenType.PLUS &&
+                        isLocal(binary._left, register) &&
+                        isNumber(binary._right)) {
+                    emit(binary._type, OpCode.INCREMENT, register,
+                            constant(((Expression.LiteralExpression)binary._right).value));
+                    return null;
+                }
+            }
+
+            // PLAIN ASSIGNMENTS TO LOCALS WRITE THE REGISTER DIRECTLY
+            if (register != null) {
+                compile(assign.value, register);
+                return null;
+            }
+        }
+
+        compile(stmt.expression, allocate());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Statement.Function stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitImportStmt(Statement.Import stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitIfStmt(Statement.If stmt) {
+        int elseJump = jumpIfFalse(stmt.condition);
+        top = locals;
+
+        statement(stmt.thenBranch);
+
+        if (stmt.elseBranch == null) {
+            patch(elseJump);
+            return null;
+        }
+
+        int endJump = emitJump(OpCode.JUMP);
+        patch(elseJump);
+        statement(stmt.elseBranch);
+        patch(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Statement.Print stmt) {
+        emit(null, OpCode.PRINT, operand(stmt.expression, null));
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Statement.Return stmt) {
+        if (stmt.value == null) {
+            emit(stmt.keyword, OpCode.RETURN_NIL);
+        } else {
+            emit(stmt.keyword, OpCode.RETURN, operand(stmt.value, null));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Statement.Var stmt) {
+        int register = allocate();
+
+        if (stmt.initializer != null) {
+            compile(stmt.initializer, register);
+        } else {
+            emit(null, OpCode.CONSTANT, register, constant(null));
+        }
+
+        declare(stmt.name.lexeme, register);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Statement.While stmt) {
+        int start = count;
+
+        int exitJump = jumpIfFalse(stmt.condition);
+        top = locals;
+
+        statement(stmt.body);
+
+        emit(null, OpCode.JUMP, start);
+        patch(exitJump);
+        return null;
+    }
+
+    // EXPRESSIONS
+
+    @Override
+    public Void visitAssignExpr(Expression.AssignExpression expr) {
+        int dst = target;
+        Integer register = local(expr.name.lexeme);
+
+        if (register != null) {
+            compile(expr.value, register);
+            if (dst != register) emit(null, OpCode.MOVE, dst, register);
+            return null;
+        }
+
+        compile(expr.value, dst);
+
+        Integer depth = interpreter.depthOf(expr);
+        if (depth != null) {
+            emit(expr.name, OpCode.SET_UPVALUE, dst, upvalue(depth), constant(expr.name));
+        } else {
+            emit(expr.name, OpCode.SET_GLOBAL, dst, constant(expr.global));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expression.BinaryExpression expr) {
+        int dst = target;
+        int left = operand(expr._left, expr._right);
+        int right = operand(expr._right, null);
+
+        int op;
+        switch (expr._type.type) {
+            case PLUS: op = OpCode.ADD; break;
+            case MINUS: op = OpCode.SUBTRACT; break;
+            case STAR: op = OpCode.MULTIPLY; break;
+            case SLASH: op = OpCode.DIVIDE; break;
+            case EQUAL_EQUAL: op = OpCode.EQUAL; break;
+            case BANG_EQUAL: op = OpCode.NOT_EQUAL; break;
+            case LESS: op = OpCode.LESS; break;
+            case LESS_EQUAL: op = OpCode.LESS_EQUAL; break;
+            case GREATER: op = OpCode.GREATER; break;
+            case GREATER_EQUAL: op = OpCode.GREATER_EQUAL; break;
+            default: throw new Unsupported();
+        }
+
+        emit(expr._type, op, dst, left, right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expression.CallExpression expr) {
+        int dst = target;
+
+        // SUPERINSTRUCTION: object.method(...) WITHOUT MATERIALISING THE PROPERTY FIRST
+        if (expr.callee instanceof Expression.GetExpression) {
+            Expression.GetExpression get = (Expression.GetExpression)expr.callee;
+            int object = operand(get.object, expr.arguments);
+            int first = arguments(expr.arguments);
+
+            emit(expr.paren, OpCode.INVOKE, dst, object, constant(get.name), first, expr.arguments.size());
+            return null;
+        }
+
+        int callee = operand(expr.callee, expr.arguments);
+        int first = arguments(expr.arguments);
+
+        emit(expr.paren, OpCode.CALL, dst, callee, first, expr.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expression.GetExpression expr) {
+        int dst = target;
+        int object = operand(expr.object, null);
+        emit(expr.name, OpCode.GET_PROPERTY, dst, object, constant(expr.name));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expression.GroupExpression expr) {
+        compile(expr._left, target);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expression.IndexExpression expr) {
+        int dst = target;
+        int object = operand(expr.object, expr.index);
+        int index = operand(expr.index, null);
+        emit(expr.bracket, OpCode.GET_INDEX, dst, object, index);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expression.LiteralExpression expr) {
+        emit(null, OpCode.CONSTANT, target, constant(expr.value));
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expression.LogicalExpression expr) {
+
+        // THE LEFT VALUE IS STORED BEFORE THE RIGHT SIDE RUNS, SO NEVER
+        // USE A VARIABLE'S OWN REGISTER AS THE SCRATCH SPACE
+        int dst = target < locals ? allocate() : target;
+
+        compile(expr.left, dst);
+        int end = emitJump(expr.operator.type == TokenType.OR ? OpCode.JUMP_IF_TRUE : OpCode.JUMP_IF_FALSE, dst);
+        compile(expr.right, dst);
+        patch(end);
+
+        if (dst != target) emit(null, OpCode.MOVE, target, dst);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expression.SetExpression expr) {
+        int dst = target;
+        int object = operand(expr.object, expr.value);
+        int value = operand(expr.value, null);
+        emit(expr.name, OpCode.SET_PROPERTY, object, constant(expr.name), value);
+        if (dst != value) emit(null, OpCode.MOVE, dst, value);
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        int dst = target;
+        int object = operand(expr.object, Arrays.asList(expr.index, expr.value));
+        int index = operand(expr.index, expr.value);
+        int value = operand(expr.value, null);
+        emit(expr.bracket, OpCode.SET_INDEX, object, index, value);
+        if (dst != value) emit(null, OpCode.MOVE, dst, value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expression.SuperExpression expr) {
+        emit(expr.method, OpCode.GET_SUPER, target,
+                upvalue(interpreter.depthOf(expr)), constant(expr.method));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expression.ThisExpression expr) {
+        emit(expr.keyword, OpCode.GET_UPVALUE, target,
+                upvalue(interpreter.depthOf(expr)), constant("this"));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expression.UnaryExpression expr) {
+        int dst = target;
+        int right = operand(expr._left, null);
+        emit(expr._type, expr._type.type == TokenType.BANG ? OpCode.NOT : OpCode.NEGATE, dst, right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expression.VariableExpression expr) {
+        Integer register = local(expr.name.lexeme);
+        if (register != null) {
+            if (register != target) emit(null, OpCode.MOVE, target, register);
+            return null;
+        }
+
+        Integer depth = interpreter.depthOf(expr);
+        if (depth != null) {
+            emit(expr.name, OpCode.GET_UPVALUE, target, upvalue(depth), constant(expr.name.lexeme));
+        } else {
+            emit(expr.name, OpCode.GET_GLOBAL, target, constant(expr.global));
+        }
+        return null;
+    }
+
+    // HELPERS
+
+    private void compile(Expression expr, int register) {
+        int saved = target;
+        target = register;
+        expr.accept(this);
+        target = saved;
+    }
+
+    // RETURN A REGISTER HOLDING expr'S VALUE. LOCALS ARE USED IN PLACE
+    // UNLESS SOMETHING EVALUATED AFTER THEM (later) COULD REASSIGN THEM
+
+    private int operand(Expression expr, Object later) {
+        if (expr instanceof Expression.VariableExpression) {
+            Integer register = local(((Expression.VariableExpression)expr).name.lexeme);
+            if (register != null && !assigns(later)) return register;
+        }
+
+        int register = allocate();
+        compile(expr, register);
+        return register;
+    }
+
+    // EVALUATE ARGUMENTS INTO CONSECUTIVE FRESH REGISTERS
+
+    private int arguments(List<Expression> arguments) {
+        int first = top;
+        for (Expression argument : arguments) {
+            compile(argument, allocate());
+        }
+        return first;
+    }
+
+    // COMPILE A CONDITION AND EMIT A JUMP TAKEN WHEN IT'S FALSE, RETURNS THE PATCH SITE
+
+    private int jumpIfFalse(Expression condition) {
+
+        // SUPERINSTRUCTION: local < number AND local <= number
+        if (condition instanceof Expression.BinaryExpression) {
+            Expression.BinaryExpression binary = (Expression.BinaryExpression)condition;
+            TokenType type = binary._type.type;
+
+            if ((type == TokenType.LESS || type == TokenType.LESS_EQUAL) &&
+                    binary._left instanceof Expression.VariableExpression &&
+                    isNumber(binary._right)) {
+                Integer register = local(((Expression.VariableExpression)binary._left).name.lexeme);
+
+                if (register != null) {
+                    emit(binary._type, type == TokenType.LESS ? OpCode.JUMP_IF_NOT_LESS : OpCode.JUMP_IF_NOT_LESS_EQUAL,
+                            register, constant(((Expression.LiteralExpression)binary._right).value), -1);
+                    return count - 1;
+                }
+            }
+        }
+
+        return emitJump(OpCode.JUMP_IF_FALSE, operand(condition, null));
+    }
+
+    private boolean isNumber(Expression expr) {
+        if (!(expr instanceof Expression.LiteralExpression)) return false;
+        Object value = ((Expression.LiteralExpression)expr).value;
+        return Operators.isNumber(value);
+    }
+
+    private boolean isLocal(Expression expr, int register) {
+        if (!(expr instanceof Expression.VariableExpression)) return false;
+        Integer found = local(((Expression.VariableExpression)expr).name.lexeme);
+        return found != null && found == register;
+    }
+
+    // DOES ANYTHING IN node ASSIGN A VARIABLE? CALLS CAN'T TOUCH OUR
+    // REGISTERS BECAUSE NOTHING CAN CLOSE OVER THEM
+
+    private boolean assigns(Object node) {
+        if (node == null) return false;
+
+        if (node instanceof List) {
+            for (Object item : (List<?>)node) {
+                if (assigns(item)) return true;
+            }
+            return false;
+        }
+
+        if (node instanceof Expression.AssignExpression) return true;
+        if (node instanceof Expression.BinaryExpression) {
+            Expression.BinaryExpression binary = (Expression.BinaryExpression)node;
+            return assigns(binary._left) || assigns(binary._right);
+        }
+        if (node instanceof Expression.LogicalExpression) {
+            Expression.LogicalExpression logical = (Expression.LogicalExpression)node;
+            return assigns(logical.left) || assigns(logical.right);
+        }
+        if (node instanceof Expression.UnaryExpression) return assigns(((Expression.UnaryExpression)node)._left);
+        if (node instanceof Expression.GroupExpression) return assigns(((Expression.GroupExpression)node)._left);
+        if (node instanceof Expression.CallExpression) {
+            Expression.CallExpression call = (Expression.CallExpression)node;
+            return assigns(call.callee) || assigns(call.arguments);
+        }
+        if (node instanceof Expression.GetExpression) return assigns(((Expression.GetExpression)node).object);
+        if (node instanceof Expression.SetExpression) {
+            Expression.SetExpression set = (Expression.SetExpression)node;
+            return assigns(set.object) || assigns(set.value);
+        }
+        if (node instanceof Expression.IndexExpression) {
+            Expression.IndexExpression index = (Expression.IndexExpression)node;
+            return assigns(index.object) || assigns(index.index);
+        }
+        if (node instanceof Expression.SetIndexExpression) {
+            Expression.SetIndexExpression set = (Expression.SetIndexExpression)node;
+            return assigns(set.object) || assigns(set.index) || assigns(set.value);
+        }
+
+        return false;
+    }
+
+    private Integer local(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Integer register = scopes.get(i).get(name);
+            if (register != null) return register;
+        }
+        return null;
+    }
+
+    // DISTANCE FROM THE CLOSURE TO A CAPTURED VARIABLE. ONLY FUNCTIONS
+    // WITHOUT NESTED fun OR class ARE COMPILED, AND THE RESOLVER ALREADY
+    // MEASURES THEIR DEPTHS FROM THE CLOSURE (THEY ARE FRAME FUNCTIONS)
+
+    private int upvalue(Integer depth) {
+        if (depth == null) throw new Unsupported();
+        return depth;
+    }
+
+    private void beginScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void endScope() {
+        Map<String, Integer> scope = scopes.remove(scopes.size() - 1);
+        locals -= scope.size();
+        top = locals;
+    }
+
+    private void declare(String name, int register) {
+        scopes.get(scopes.size() - 1).put(name, register);
+        locals = register + 1;
+    }
+
+    private int allocate() {
+        int register = top++;
+        if (top > maxRegisters) maxRegisters = top;
+        return register;
+    }
+
+    private int constant(Object value) {
+        // TOKENS ARE KEPT BY IDENTITY, THEY CARRY THE LINE FOR ERRORS
+        if (!(value instanceof Token)) {
+            Integer index = constantIndex.get(value);
+            if (index != null) return index;
+            constantIndex.put(value, constants.size());
+        }
+
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    private void emit(Token token, int op, int... operands) {
+        if (count + operands.length + 1 > code.length) {
+            code = Arrays.copyOf(code, code.length * 2 + operands.length);
+            tokens = Arrays.copyOf(tokens, code.length);
+        }
+
+        tokens[count] = token;
+        code[count++] = op;
+        for (int operand : operands) {
+            code[count++] = operand;
+        }
+    }
+
+    private int emitJump(int op, int... operands) {
+        int[] withTarget = Arrays.copyOf(operands, operands.length + 1);
+        withTarget[operands.length] = -1;
+        emit(null, op, withTarget);
+        return count - 1;
+    }
+
+    private void patch(int site) {
+        code[site] = count;
+    }
+}
@@ -0,0 +1,423 @@
+package com.pikl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+
+    REGISTER BASED BACK END
+
+    FUNCTIONS ARE COMPILED ON THEIR FIRST CALL, ANYTHING THE COMPILER
+    REJECTS KEEPS RUNNING ON THE TREE WALKER. TOP LEVEL CODE ALWAYS
+    RUNS ON THE TREE WALKER, SO BOTH BACK ENDS SHARE globals AND CALL
+    EACH OTHER FREELY
+
+    A CALL FROM ONE COMPILED FUNCTION TO ANOTHER DOESN'T USE THE JAVA
+    STACK: THE CALLER IS SAVED IN A Frame AND THE SAME LOOP RUNS THE
+    CALLEE, RETURN PICKS THE CALLER BACK UP. RECURSION BETWEEN COMPILED
+    FUNCTIONS IS ONLY LIMITED BY MEMORY. CALLS INTO THE TREE WALKER, THE
+    JIT'S CODE OR A NATIVE STILL NEST, AND START A NEW LOOP IF THEY CALL
+    BACK INTO COMPILED CODE
+
+ */
+
+class RegisterVM {
+
+    // A COMPILED CALLER WAITING FOR ITS CALLEE TO RETURN
+    private static class Frame {
+        Chunk chunk;
+        Environment closure;
+        Object[] registers;
+        PklFunction function;
+
+        // WHERE TO CARRY ON, AND THE REGISTER THAT GETS THE CALLEE'S VALUE
+        int pc;
+        int result;
+    }
+
+    private final Interpreter interpreter;
+
+    private Frame[] frames = new Frame[64];
+    private int depth = 0;
+
+    RegisterVM(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    Chunk compile(Statement.Function function) {
+        if (!function.compiled) {
+            Resolver.complete(function);
+            function.compiled = true;
+            function.chunk = new RegisterCompiler(interpreter).compile(function);
+        }
+        return function.chunk;
+    }
+
+    Object execute(Chunk chunk, Environment closure, Object[] registers) {
+        int[] code = chunk.code;
+        Object[] constants = chunk.constants;
+        int pc = 0;
+
+        // THE FUNCTION BEING RUN, null FOR THE ONE WE WERE ENTERED WITH.
+        // FRAMES BELOW base BELONG TO AN OUTER execute
+        PklFunction function = null;
+        final int base = depth;
+
+        try {
+            while (true) {
+                switch (code[pc]) {
+
+                    case OpCode.CONSTANT:
+                        registers[code[pc + 1]] = constants[code[pc + 2]];
+                        pc += 3;
+                        break;
+
+                    case OpCode.MOVE:
+                        registers[code[pc + 1]] = registers[code[pc + 2]];
+                        pc += 3;
+                        break;
+
+                    case OpCode.GET_GLOBAL:
+                        registers[code[pc + 1]] = interpreter.globals.read(
+                                (Globals.Cell)constants[code[pc + 2]], chunk.tokens[pc]);
+                        pc += 3;
+                        break;
+
+                    case OpCode.SET_GLOBAL:
+                        interpreter.globals.write((Globals.Cell)constants[code[pc + 2]], chunk.tokens[pc],
+                                registers[code[pc + 1]]);
+                        pc += 3;
+                        break;
+
+                    case OpCode.GET_UPVALUE:
+                        registers[code[pc + 1]] = closure.getAt(code[pc + 2], (String)constants[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.SET_UPVALUE:
+                        closure.assignAt(code[pc + 2], (Token)constants[code[pc + 3]], registers[code[pc + 1]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.ADD: {
+                        Object left = registers[code[pc + 2]];
+                        Object right = registers[code[pc + 3]];
+                        int a, b, r;
+                        if (left instanceof Integer && right instanceof Integer &&
+                                (((a = (int)left) ^ (r = a + (b = (int)right))) & (b ^ r)) >= 0) {
+                            registers[code[pc + 1]] = r;
+                        } else {
+                            registers[code[pc + 1]] = Operators.add(chunk.tokens[pc], left, right);
+                        }
+                        pc += 4;
+                        break;
+                    }
+
+                    case OpCode.SUBTRACT: {
+                        Object left = registers[code[pc + 2]];
+                        Object right = registers[code[pc + 3]];
+                        int a, b, r;
+                        if (left instanceof Integer && right instanceof Integer &&
+                                (((a = (int)left) ^ (b = (int)right)) & (a ^ (r = a - b))) >= 0) {
+                            registers[code[pc + 1]] = r;
+                        } else {
+                            registers[code[pc + 1]] = Operators.subtract(chunk.tokens[pc], left, right);
+                        }
+                        pc += 4;
+                        break;
+                    }
+
+                    case OpCode.MULTIPLY:
+                        registers[code[pc + 1]] = Operators.multiply(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.DIVIDE:
+                        registers[code[pc + 1]] = Operators.divide(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.EQUAL:
+                        registers[code[pc + 1]] = Operators.isEqual(registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.NOT_EQUAL:
+                        registers[code[pc + 1]] = !Operators.isEqual(registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.LESS:
+                        registers[code[pc + 1]] = Operators.less(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.LESS_EQUAL:
+                        registers[code[pc + 1]] = Operators.lessEqual(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.GREATER:
+                        registers[code[pc + 1]] = Operators.greater(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.GREATER_EQUAL:
+                        registers[code[pc + 1]] = Operators.greaterEqual(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.NOT:
+                        registers[code[pc + 1]] = !Operators.isTruth(registers[code[pc + 2]]);
+                        pc += 3;
+                        break;
+
+                    case OpCode.NEGATE:
+                        registers[code[pc + 1]] = Operators.negate(chunk.tokens[pc], registers[code[pc + 2]]);
+                        pc += 3;
+                        break;
+
+                    case OpCode.JUMP:
+                        pc = code[pc + 1];
+                        break;
+
+                    case OpCode.JUMP_IF_FALSE:
+                        pc = Operators.isTruth(registers[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                        break;
+
+                    case OpCode.JUMP_IF_TRUE:
+                        pc = Operators.isTruth(registers[code[pc + 1]]) ? code[pc + 2] : pc + 3;
+                        break;
+
+                    case OpCode.CALL:
+                    case OpCode.INVOKE: {
+                        Object callee;
+                        int first, count, next;
+                        if (code[pc] == OpCode.CALL) {
+                            callee = registers[code[pc + 2]];
+                            first = code[pc + 3];
+                            count = code[pc + 4];
+                            next = pc + 5;
+                        } else {
+                            callee = Operators.getProperty((Token)constants[code[pc + 3]], registers[code[pc + 2]]);
+                            first = code[pc + 4];
+                            count = code[pc + 5];
+                            next = pc + 6;
+                        }
+
+                        Chunk target = target(chunk.tokens[pc], callee, count);
+                        if (target == null) {
+                            registers[code[pc + 1]] = call(chunk.tokens[pc], callee, registers, first, count);
+                            pc = next;
+                            break;
+                        }
+
+                        // SAVE THE CALLER AND SWITCH TO THE CALLEE
+                        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+                        Frame frame = frames[depth];
+                        if (frame == null) frame = frames[depth] = new Frame();
+                        frame.chunk = chunk;
+                        frame.closure = closure;
+                        frame.registers = registers;
+                        frame.function = function;
+                        frame.pc = next;
+                        frame.result = code[pc + 1];
+                        depth++;
+                        Stats.functionCalls++;
+
+                        Object[] arguments = registers;
+                        registers = new Object[target.registers];
+                        System.arraycopy(arguments, first, registers, 0, count);
+
+                        function = (PklFunction)callee;
+                        closure = function.closure;
+                        chunk = target;
+                        code = chunk.code;
+                        constants = chunk.constants;
+                        pc = 0;
+                        break;
+                    }
+
+                    case OpCode.GET_PROPERTY:
+                        registers[code[pc + 1]] = Operators.getProperty((Token)constants[code[pc + 3]],
+                                registers[code[pc + 2]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.SET_PROPERTY: {
+                        Token name = (Token)constants[code[pc + 2]];
+                        Object object = registers[code[pc + 1]];
+                        if (!(object instanceof PklInstance)) {
+                            throw new RuntimeError(name, "Only instances have fields.");
+                        }
+                        ((PklInstance)object).set(name, registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+                    }
+
+                    case OpCode.GET_INDEX:
+                        registers[code[pc + 1]] = Operators.getIndex(chunk.tokens[pc],
+                                registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+
+                    case OpCode.SET_INDEX: {
+                        Object object = registers[code[pc + 1]];
+                        if (!(object instanceof NativeObject)) {
+                            throw new RuntimeError(chunk.tokens[pc], "Only lists and maps can be indexed.");
+                        }
+                        ((NativeObject)object).setIndex(chunk.tokens[pc], registers[code[pc + 2]], registers[code[pc + 3]]);
+                        pc += 4;
+                        break;
+                    }
+
+                    case OpCode.GET_SUPER: {
+                        int distance = code[pc + 2];
+                        Token method = (Token)constants[code[pc + 3]];
+                        PklClass superclass = (PklClass)closure.getAt(distance, "super");
+                        PklInstance object = (PklInstance)closure.getAt(distance - 1, "this");
+
+                        PklFunction found = superclass.findMethod(object, method.lexeme);
+                        if (found == null) {
+                            throw new RuntimeError(method,
+                                    "Undefined property '" + method.lexeme + "'.");
+                        }
+
+                        registers[code[pc + 1]] = found;
+                        pc += 4;
+                        break;
+                    }
+
+                    case OpCode.PRINT:
+                        System.out.println(Operators.stringify(registers[code[pc + 1]]));
+                        pc += 2;
+                        break;
+
+                    case OpCode.RETURN:
+                    case OpCode.RETURN_NIL: {
+                        Object value = code[pc] == OpCode.RETURN ? registers[code[pc + 1]] : null;
+                        if (depth == base) return value;
+
+                        if (function.isInitializer) value = closure.getAt(0, "this");
+
+                        // PICK THE CALLER BACK UP
+                        Frame frame = frames[--depth];
+                        chunk = frame.chunk;
+                        closure = frame.closure;
+                        registers = frame.registers;
+                        function = frame.function;
+                        code = chunk.code;
+                        constants = chunk.constants;
+                        pc = frame.pc;
+                        registers[frame.result] = value;
+
+                        frame.chunk = null;
+                        frame.closure = null;
+                        frame.registers = null;
+                        frame.function = null;
+                        break;
+                    }
+
+                    case OpCode.INCREMENT: {
+                        int register = code[pc + 1];
+                        Object value = registers[register];
+                        Object step = constants[code[pc + 2]];
+                        int a, b, r;
+                        if (value instanceof Integer && step instanceof Integer &&
+                                (((a = (int)value) ^ (r = a + (b = (int)step))) & (b ^ r)) >= 0) {
+                            registers[register] = r;
+                        } else {
+                            registers[register] = Operators.add(chunk.tokens[pc], value, step);
+                        }
+                        pc += 3;
+                        break;
+                    }
+
+                    case OpCode.JUMP_IF_NOT_LESS: {
+                        Object value = registers[code[pc + 1]];
+                        Object bound = constants[code[pc + 2]];
+                        boolean less = value instanceof Integer && bound instanceof Integer
+                                ? (int)value < (int)bound
+                                : Operators.less(chunk.tokens[pc], value, bound);
+                        pc = less ? pc + 4 : code[pc + 3];
+                        break;
+                    }
+
+                    case OpCode.JUMP_IF_NOT_LESS_EQUAL: {
+                        Object value = registers[code[pc + 1]];
+                        Object bound = constants[code[pc + 2]];
+                        boolean less = value instanceof Integer && bound instanceof Integer
+                                ? (int)value <= (int)bound
+                                : Operators.lessEqual(chunk.tokens[pc], value, bound);
+                        pc = less ? pc + 4 : code[pc + 3];
+                        break;
+                    }
+
+                    default:
+                        throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+                }
+            }
+        } finally {
+            // AN ERROR UNWINDS EVERY FRAME THIS LOOP PUSHED
+            while (depth > base) {
+                Frame frame = frames[--depth];
+                frame.chunk = null;
+                frame.closure = null;
+                frame.registers = null;
+                frame.function = null;
+            }
+        }
+    }
+
+    // THE CHUNK TO RUN callee ON IN THE CALLER'S LOOP, OR null IF IT HAS
+    // TO BE CALLED. THE JIT'S CODE, WHEN THERE IS ANY, COMES FIRST
+
+    private Chunk target(Token paren, Object callee, int count) {
+        if (!(callee instanceof PklFunction)) return null;
+        PklFunction function = (PklFunction)callee;
+
+        if (interpreter.jit != null && count == function.arity() &&
+                interpreter.jit.enter(function.declaration) != null) {
+            return null;
+        }
+
+        Chunk chunk = compile(function.declaration);
+        if (chunk != null && count != chunk.arity) {
+            throw new RuntimeError(paren, "Expected " +
+                    chunk.arity + " arguments but got " + count + ".");
+        }
+        return chunk;
+    }
+
+    // CALLS THE LOOP CAN'T RUN ITSELF. ARGUMENTS FOR THE JIT'S CODE ARE
+    // COPIED STRAIGHT FROM THE REGISTERS, EVERYTHING ELSE GOES THROUGH
+    // Callable
+
+    private Object call(Token paren, Object callee, Object[] registers, int first, int count) {
+        if (callee instanceof PklFunction && interpreter.jit != null) {
+            PklFunction function = (PklFunction)callee;
+
+            // target() HAS ALREADY ASKED THE JIT FOR IT
+            JitCode code = function.declaration.jitCode;
+            if (code != null && count == function.arity()) {
+                Stats.functionCalls++;
+                return function.call(interpreter,
+                        code, Arrays.copyOfRange(registers, first, first + count));
+            }
+        }
+
+        List<Object> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add(registers[first + i]);
+        }
+
+        return Operators.call(interpreter, paren, callee, arguments);
+    }
+}
@@ -1,9 +1,11 @@
 package com.pikl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
 
 class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
 
@@ -21,19 +23,228 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
     }
 
     private ClassType currentClass = ClassType.NONE;
+    private Statement.Class classStatement = null;
 
     private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
 
+    // EACH SCOPE MAPS ITS NAMES TO THEIR FRAME SLOTS, OR NO_SLOT. ONE MAP
+    // PER SCOPE IN AN UNSYNCHRONIZED LIST, THE INNERMOST LAST. A NAME
+    // WHOSE var OR class IS STILL BEING RESOLVED CAN'T BE READ YET, IT
+    // MAPS TO undefined(slot) UNTIL IT IS DEFINED
+    private static final Integer NO_SLOT = -1;
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+
+    private static int undefined(int slot) {
+        return Integer.MIN_VALUE + 1 + slot;
+    }
+
+    private static int slot(int entry) {
+        return entry < NO_SLOT ? entry - Integer.MIN_VALUE - 1 : entry;
+    }
+
+    // FUNCTIONS THAT DECLARE NO FUNCTIONS OR CLASSES CAN'T HAVE THEIR
+    // LOCALS CAPTURED, SO THE INTERPRETER KEEPS THEM IN FRAME SLOTS.
+    // frame IS THE ONE BEING RESOLVED AND ITS PARAMETER SCOPE IS AT
+    // frameBase. ITS SCOPES HOLD REAL SLOTS, ALL OTHERS HOLD NO_SLOT
+    private Statement.Function frame = null;
+    private int frameBase = 0;
+    private int nextSlot = 0;
+
+    // WHOLE PROGRAM FACTS FOR bindCalls()
+    private final Map<Globals.Cell, Statement.Function> globalFunctions = new HashMap<>();
+    private final Set<Globals.Cell> reassigned = new HashSet<>();
+    private final List<Expression.CallExpression> globalCalls = new ArrayList<>();
+
+    // SMALL TOP LEVEL FUNCTIONS ARE INLINED INTO THEIR CALLERS, ONE LEVEL
+    // DEEP. topLevel HOLDS EACH NAME DEFINED BY EXACTLY ONE TOP LEVEL fun,
+    // inlining IS SET WHILE A COPY IS BEING RESOLVED
+    private Map<String, Statement.Function> topLevel = null;
+    private Inliner inliner;
+    private boolean inlining = false;
+    private final List<Expression.CallExpression> copiedCalls = new ArrayList<>();
+
+    // FOR shake(). THE GLOBALS USED BY EACH TOP LEVEL fun OR class, UNDER
+    // ITS NAME, AND BY THE CODE THAT RUNS, UNDER null. ONLY KEPT BY
+    // resolveProgram AND startProgram
+    private Map<String, Set<String>> uses = null;
+    private String declaring = null;
+    private final Set<String> assigned = new HashSet<>();
+
+    // SET FOR A PROGRAM WITHOUT IMPORTS, SEE Hoister
+    private boolean globalsInvariant = false;
+
+    // COUNTED LOOPS WHOSE BODIES ARE BEING RESOLVED
+    private final List<Statement.While.Counted> counting = new ArrayList<>();
+
+    // SET ON A COPY MADE FOR A LAZY FUNCTION BODY
+    private FunctionType lazyType;
+
     Resolver(Interpreter interpreter) {
         this.interpreter = interpreter;
     }
 
+    // SNAPSHOT THE SCOPES AROUND A LAZY FUNCTION SO ITS BODY CAN BE
+    // RESOLVED LATER EXACTLY AS IF IT HAD BEEN RESOLVED NOW
+
+    private Resolver(Resolver enclosing, FunctionType type) {
+        this.interpreter = enclosing.interpreter;
+        this.currentClass = enclosing.currentClass;
+        this.classStatement = enclosing.classStatement;
+        this.currentFunction = enclosing.currentFunction;
+        this.globalsInvariant = enclosing.globalsInvariant;
+        this.lazyType = type;
+
+        // LAZY FUNCTIONS ARE NEVER INSIDE ANOTHER FUNCTION, SO THERE ARE NO SLOTS TO COPY
+        for (Map<String, Integer> scope : enclosing.scopes) {
+            scopes.add(new HashMap<>(scope));
+        }
+    }
+
+    // RESOLVE THE WHOLE PROGRAM, INLINING AND BINDING ITS CALLS
+
+    void resolveProgram(List<Statement> statements) {
+        topLevel = new HashMap<>();
+        Set<String> repeated = new HashSet<>();
+        globalsInvariant = true;
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Import) globalsInvariant = false;
+            if (statement instanceof Statement.Function) {
+                Statement.Function function = (Statement.Function)statement;
+                if (topLevel.put(function.name.lexeme, function) != null) repeated.add(function.name.lexeme);
+            }
+        }
+        topLevel.keySet().removeAll(repeated);
+        inliner = new Inliner(interpreter.globals);
+        uses = new HashMap<>();
+
+        resolve(statements);
+        bindCalls();
+
+        topLevel = null;
+        inliner = null;
+    }
+
+    // FOR --resolve-while-parsing, SEE Loader. EACH STATEMENT IS RESOLVED
+    // BEFORE ANYTHING AFTER IT IS PARSED, SO NO NAME IS KNOWN TO HAVE A
+    // SINGLE fun TO INLINE AND A LATER import COULD STILL CHANGE ANY GLOBAL
+
+    void startProgram() {
+        globalsInvariant = false;
+        uses = new HashMap<>();
+    }
+
+    void resolveNext(Statement statement) {
+        resolve(statement);
+    }
+
+    void finishProgram() {
+        bindCalls();
+    }
+
+    /*
+        TREE SHAKING. A TOP LEVEL fun OR class IS ONLY CREATED IF THE CODE
+        THAT RUNS CAN REACH ITS NAME, DIRECTLY OR THROUGH THE BODIES OF
+        OTHER REACHABLE DECLARATIONS. CREATING A FUNCTION CAN'T FAIL, BUT
+        CREATING A CLASS EVALUATES ITS SUPERCLASS, SO A SUBCLASS IS ONLY
+        DROPPED IF ITS SUPERCLASS IS A CLASS DECLARED ONCE, EARLIER, AND
+        NEVER ASSIGNED. A MODULE CAN USE ANY GLOBAL, SO A PROGRAM WITH
+        IMPORTS IS KEPT WHOLE
+     */
+
+    List<Statement> shake(List<Statement> statements) {
+        Map<String, Integer> definitions = new HashMap<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Import) return statements;
+            String name = declared(statement);
+            if (name != null) definitions.merge(name, 1, Integer::sum);
+        }
+
+        Set<String> live = new HashSet<>();
+        List<String> work = new ArrayList<>();
+        if (uses.containsKey(null)) work.addAll(uses.get(null));
+        while (!work.isEmpty()) {
+            String name = work.remove(work.size() - 1);
+            if (live.add(name) && uses.containsKey(name)) work.addAll(uses.get(name));
+        }
+
+        List<Statement> kept = new ArrayList<>(statements.size());
+        Set<String> classes = new HashSet<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Function) {
+                if (!live.contains(((Statement.Function)statement).name.lexeme)) continue;
+            } else if (statement instanceof Statement.Class) {
+                Statement.Class klass = (Statement.Class)statement;
+                String superclass = klass.superclass == null ? null : klass.superclass.name.lexeme;
+                boolean safe = superclass == null || (classes.contains(superclass) &&
+                        definitions.get(superclass) == 1 && !assigned.contains(superclass));
+                classes.add(klass.name.lexeme);
+                if (safe && !live.contains(klass.name.lexeme)) continue;
+            }
+            kept.add(statement);
+        }
+
+        uses = null;
+        assigned.clear();
+        return kept;
+    }
+
+    private static String declared(Statement statement) {
+        if (statement instanceof Statement.Function) return ((Statement.Function)statement).name.lexeme;
+        if (statement instanceof Statement.Class) return ((Statement.Class)statement).name.lexeme;
+        if (statement instanceof Statement.Var) return ((Statement.Var)statement).name.lexeme;
+        return null;
+    }
+
+    private void use(String name) {
+        if (uses == null) return;
+
+        Set<String> used = uses.get(declaring);
+        if (used == null) {
+            used = new HashSet<>();
+            uses.put(declaring, used);
+        }
+        used.add(name);
+    }
+
+    // PARSE AND RESOLVE A LAZY BODY, CALLED BEFORE ITS FIRST RUN
+
+    static void complete(Statement.Function function) {
+        if (function.body != null) return;
+
+        List<Statement> body = new Parser(function.lazyBody, false).lazyBody();
+        if (!Main.hadError) {
+            function.body = body;
+            function.lazyResolver.resolveFunction(function, function.lazyResolver.lazyType);
+        }
+
+        if (Main.hadError) {
+            function.body = null;
+            throw new RuntimeError(function.name,
+                    "Unable to compile function '" + function.name.lexeme + "'.");
+        }
+
+        function.lazyBody = null;
+        function.lazyResolver = null;
+    }
+
     @Override
     public Void visitAssignExpr(Expression.AssignExpression expr) {
+        // A GLOBAL OF AN INLINED FUNCTION, ALREADY BOUND BY THE Inliner
+        boolean bound = inlining && expr.global != null;
+
+        for (Statement.While.Counted loop : counting) {
+            if (expr != loop.increment && expr.name.lexeme.equals(loop.variable.name.lexeme)) {
+                loop.assigned = true;
+            }
+        }
+
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        if (bound) {
+            redefine(expr.name);
+        } else {
+            resolveLocal(expr, expr.name);
+        }
         return null;
     }
 
@@ -52,9 +263,94 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
             resolve(argument);
         }
 
+        if (expr.callee instanceof Expression.VariableExpression) {
+            Globals.Cell cell = ((Expression.VariableExpression)expr.callee).global;
+            if (cell != null && cell.constant != null) {
+                bind(expr, cell, !inlining);
+            } else if (cell != null) {
+                (inlining ? copiedCalls : globalCalls).add(expr);
+            }
+            if (cell != null) inline(expr, cell);
+        }
+
         return null;
     }
 
+    // RESOLVE A COPY OF THE CALLEE'S BODY IN PLACE, AS A BLOCK WHOSE
+    // PARAMETERS AND RESULT EXPRESSION ARE INSIDE THE BLOCK'S SCOPE
+
+    private void inline(Expression.CallExpression expr, Globals.Cell cell) {
+        if (inlining || topLevel == null) return;
+
+        Statement.Function function = topLevel.get(cell.name);
+        if (function == null || !inliner.inline(function, expr)) return;
+
+        Statement.Block block = expr.inlined;
+        boolean scoped = !expr.inlinedParameters.isEmpty() || declaresNames(block.statements);
+        block.flat = !scoped || frame != null;
+
+        inlining = true;
+        if (scoped) beginScope();
+        for (Statement.Var parameter : expr.inlinedParameters) {
+            resolve(parameter);
+        }
+        resolve(block.statements);
+        if (expr.inlinedResult != null) resolve(expr.inlinedResult);
+        if (scoped) endScope();
+        inlining = false;
+    }
+
+    /*
+        STATIC CALL BINDING. ONCE THE WHOLE PROGRAM IS RESOLVED, A GLOBAL
+        DEFINED BY EXACTLY ONE TOP LEVEL fun, NEVER ASSIGNED AND NOT ALREADY
+        DEFINED (A BUILT-IN, AN EARLIER SCRIPT OR A SNAPSHOT) ALWAYS HOLDS
+        THAT FUNCTION ONCE IT HAS A VALUE. CALLS TO IT SKIP THE CALLABLE AND
+        ARITY CHECKS, SO A WRONG ARGUMENT COUNT IS A RESOLVE ERROR. CALLS IN
+        INLINED COPIES ARE ONLY BOUND, THE ORIGINALS REPORT ANY ERROR
+     */
+
+    private void bindCalls() {
+        for (Map.Entry<Globals.Cell, Statement.Function> entry : globalFunctions.entrySet()) {
+            Globals.Cell cell = entry.getKey();
+            if (!reassigned.contains(cell) && !cell.defined) cell.constant = entry.getValue();
+        }
+
+        for (Expression.CallExpression call : globalCalls) {
+            Globals.Cell cell = ((Expression.VariableExpression)call.callee).global;
+            if (cell.constant != null) bind(call, cell, true);
+        }
+
+        for (Expression.CallExpression call : copiedCalls) {
+            Globals.Cell cell = ((Expression.VariableExpression)call.callee).global;
+            if (cell.constant != null) bind(call, cell, false);
+        }
+
+        globalFunctions.clear();
+        reassigned.clear();
+        globalCalls.clear();
+        copiedCalls.clear();
+    }
+
+    private void bind(Expression.CallExpression call, Globals.Cell cell, boolean report) {
+        int arity = cell.constant.parameters.size();
+        if (call.arguments.size() != arity) {
+            if (report) {
+                Main.error(call.paren, "Expected " + arity + " arguments but got " +
+                        call.arguments.size() + ".");
+            }
+            return;
+        }
+        call.direct = cell;
+    }
+
+    // A TOP LEVEL DECLARATION OR GLOBAL ASSIGNMENT, ANY BINDING OF THE NAME IS OFF
+
+    private void redefine(Token name) {
+        Globals.Cell cell = interpreter.globals.cell(name.lexeme);
+        cell.constant = null;
+        reassigned.add(cell);
+    }
+
     @Override
     public Void visitGetExpr(Expression.GetExpression expr) {
         resolve(expr.object);
@@ -67,6 +363,13 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitIndexExpr(Expression.IndexExpression expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
     @Override
     public Void visitLiteralExpr(Expression.LiteralExpression expr) {
         return null;
@@ -86,6 +389,14 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        resolve(expr.value);
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
     @Override
     public Void visitSuperExpr(Expression.SuperExpression expr) {
 
@@ -97,6 +408,8 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
                     "Cannot use 'super' in a class with no superclass.");
         }
 
+        if (classStatement != null) classStatement.supers.add(expr);
+
         resolveLocal(expr, expr.keyword);
         return null;
     }
@@ -122,8 +435,10 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expression.VariableExpression expr) {
-        if (!scopes.isEmpty() &&
-                scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
+        if (inlining && expr.global != null) return null;
+
+        Integer entry = scopes.isEmpty() ? null : innermost().get(expr.name.lexeme);
+        if (entry != null && entry < NO_SLOT) {
             Main.error(expr.name,
                     "Cannot read local variable in its own initializer.");
         }
@@ -134,17 +449,52 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
 
     private void resolveLocal(Expression expr, Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
+            Integer entry = scopes.get(i).get(name.lexeme);
+            if (entry != null) {
+                int slot = slot(entry);
+
+                // A LOCAL OF THE FRAME FUNCTION ITSELF
+                if (frame != null && i >= frameBase) {
+                    if (expr instanceof Expression.VariableExpression) {
+                        ((Expression.VariableExpression)expr).slot = slot;
+                    } else {
+                        ((Expression.AssignExpression)expr).slot = slot;
+                    }
+                    return;
+                }
+
+                // A FRAME FUNCTION RUNS DIRECTLY IN ITS CLOSURE, ITS OWN
+                // SCOPES DON'T EXIST AT RUNTIME
+                int depth = scopes.size() - 1 - i;
+                if (frame != null) depth -= scopes.size() - frameBase;
+
+                interpreter.resolve(expr, depth);
                 return;
             }
         }
 
         // Not found. Assume it is global.
+        Globals.Cell cell = interpreter.globals.cell(name.lexeme);
+        use(name.lexeme);
+        if (expr instanceof Expression.VariableExpression) {
+            ((Expression.VariableExpression)expr).global = cell;
+        } else if (expr instanceof Expression.AssignExpression) {
+            ((Expression.AssignExpression)expr).global = cell;
+            redefine(name);
+            if (uses != null) assigned.add(name.lexeme);
+        }
     }
 
     @Override
     public Void visitBlockStmt(Statement.Block stmt) {
+        // A BLOCK THAT DECLARES NOTHING DOESN'T NEED A SCOPE OF ITS OWN
+        if (!declaresNames(stmt.statements)) {
+            stmt.flat = true;
+            resolve(stmt.statements);
+            return null;
+        }
+
+        stmt.flat = frame != null;
         beginScope();
         resolve(stmt.statements);
         endScope();
@@ -152,7 +502,11 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<String, Boolean>());
+        scopes.add(new HashMap<String, Integer>());
+    }
+
+    private Map<String, Integer> innermost() {
+        return scopes.get(scopes.size() - 1);
     }
 
     void resolve(List<Statement> statements) {
@@ -166,14 +520,21 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
     }
 
     private void endScope() {
-        scopes.pop();
+        Map<String, Integer> scope = scopes.remove(scopes.size() - 1);
+
+        // SIBLING BLOCKS REUSE THE SAME SLOTS
+        if (frame != null && scopes.size() >= frameBase) nextSlot -= scope.size();
     }
 
     @Override
     public Void visitClassStmt(Statement.Class stmt) {
 
         ClassType enclosingClass = currentClass;
+        Statement.Class enclosingStatement = classStatement;
+        String enclosingDeclaring = declaring;
         currentClass = ClassType.CLASS;
+        classStatement = stmt;
+        if (scopes.isEmpty()) declaring = stmt.name.lexeme;
 
         declare(stmt.name);
 
@@ -186,11 +547,11 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
 
         if (stmt.superclass != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            innermost().put("super", NO_SLOT);
         }
 
         beginScope();
-        scopes.peek().put("this", true);
+        innermost().put("this", NO_SLOT);
 
         for (Statement.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
@@ -207,6 +568,8 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
         if (stmt.superclass != null) endScope();
 
         currentClass = enclosingClass;
+        classStatement = enclosingStatement;
+        declaring = enclosingDeclaring;
 
         return null;
     }
@@ -219,19 +582,55 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Statement.Function stmt) {
-        declare(stmt.name);
-        define(stmt.name);
+        String enclosingDeclaring = declaring;
+        if (scopes.isEmpty()) {
+            declaring = stmt.name.lexeme;
+
+            Globals.Cell cell = interpreter.globals.cell(stmt.name.lexeme);
+            if (cell.constant == null && !globalFunctions.containsKey(cell) && !reassigned.contains(cell)) {
+                globalFunctions.put(cell, stmt);
+            } else {
+                redefine(stmt.name);
+            }
+        } else {
+            declare(stmt.name);
+            define(stmt.name);
+        }
 
         resolveFunction(stmt, FunctionType.FUNCTION);
+        declaring = enclosingDeclaring;
 
         return null;
     }
 
     private void resolveFunction(Statement.Function function, FunctionType type) {
 
+        if (function.body == null) {
+            function.lazyResolver = new Resolver(this, type);
+
+            // THE BODY ISN'T PARSED YET, IT MIGHT USE ANY NAME IN IT
+            for (Token token : function.lazyBody) {
+                if (token.type == TokenType.IDENTIFIER) use(token.lexeme);
+            }
+            return;
+        }
+
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
 
+        Statement.Function enclosingFrame = frame;
+        int enclosingBase = frameBase;
+        int enclosingSlot = nextSlot;
+
+        if (declaresClosures(function.body)) {
+            frame = null;
+        } else {
+            frame = function;
+            frameBase = scopes.size();
+            nextSlot = 0;
+            function.frameSize = 0;
+        }
+
         beginScope();
         for (Token param : function.parameters) {
             declare(param);
@@ -240,9 +639,50 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
         resolve(function.body);
         endScope();
 
+        if (frame == function) Typer.infer(function);
+
+        frame = enclosingFrame;
+        frameBase = enclosingBase;
+        nextSlot = enclosingSlot;
+
         currentFunction = enclosingFunction;
     }
 
+    private static boolean declaresNames(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Var || statement instanceof Statement.Function ||
+                    statement instanceof Statement.Class || statement instanceof Statement.Import) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean declaresClosures(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (declaresClosures(statement)) return true;
+        }
+        return false;
+    }
+
+    private static boolean declaresClosures(Statement statement) {
+        if (statement instanceof Statement.Function || statement instanceof Statement.Class) {
+            return true;
+        }
+        if (statement instanceof Statement.Block) {
+            return declaresClosures(((Statement.Block)statement).statements);
+        }
+        if (statement instanceof Statement.If) {
+            Statement.If branch = (Statement.If)statement;
+            return declaresClosures(branch.thenBranch) ||
+                    (branch.elseBranch != null && declaresClosures(branch.elseBranch));
+        }
+        if (statement instanceof Statement.While) {
+            return declaresClosures(((Statement.While)statement).body);
+        }
+        return false;
+    }
+
     @Override
     public Void visitIfStmt(Statement.If stmt) {
         resolve(stmt.condition);
@@ -251,6 +691,14 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Statement.Import stmt) {
+        if (!scopes.isEmpty()) {
+            Main.error(stmt.keyword, "Can only import at top level.");
+        }
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Statement.Print stmt) {
         resolve(stmt.expression);
@@ -280,6 +728,7 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
     @Override
     public Void visitVarStmt(Statement.Var stmt) {
         declare(stmt.name);
+        if (frame != null) stmt.slot = slot(innermost().get(stmt.name.lexeme));
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -292,27 +741,45 @@ class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
     }
 
     private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+        if (scopes.isEmpty()) {
+            redefine(name);
+            return;
+        }
 
-        Map<String, Boolean> scope = scopes.peek();
+        Map<String, Integer> scope = innermost();
 
         if (scope.containsKey(name.lexeme)) {
             Main.error(name,
                     "Variable with this name already declared in this scope.");
+        } else if (frame != null) {
+            scope.put(name.lexeme, undefined(nextSlot++));
+            frame.frameSize = Math.max(frame.frameSize, nextSlot);
+        } else {
+            scope.put(name.lexeme, undefined(NO_SLOT));
         }
-
-        scope.put(name.lexeme, false);
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+
+        Map<String, Integer> scope = innermost();
+        Integer entry = scope.get(name.lexeme);
+        if (entry != null && entry < NO_SLOT) scope.put(name.lexeme, slot(entry));
     }
 
     @Override
     public Void visitWhileStmt(Statement.While stmt) {
         resolve(stmt.condition);
+
+        Statement.While.Counted loop = stmt.counted;
+        if (loop != null) counting.add(loop);
         resolve(stmt.body);
+        if (loop != null) {
+            counting.remove(counting.size() - 1);
+            if (loop.assigned || declaresClosures(loop.body)) stmt.counted = null;
+        }
+
+        new Hoister(globalsInvariant).loop(stmt);
         return null;
     }
 }
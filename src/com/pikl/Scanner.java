@@ -1,5 +1,6 @@
 package com.pikl;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +30,7 @@ public class Scanner {
         keywords.put("true",   TRUE);
         keywords.put("var",    VAR);
         keywords.put("while",  WHILE);
+        keywords.put("import", IMPORT);
 
         // STANDARD LIBRARY FUNCTION DEFINITIONS
 
@@ -78,8 +80,11 @@ public class Scanner {
 
         TokenType type = keywords.get(text);
 
-        if (type == null)
-            type = IDENTIFIER;
+        if (type == null) {
+            // INTERNED SO NAME LOOKUPS (METHOD TABLES, FIELDS, GLOBALS) MATCH ON IDENTITY
+            tokens.add(new Token(IDENTIFIER, text.intern(), null, line));
+            return;
+        }
 
         addToken(type);
 
@@ -111,7 +116,8 @@ public class Scanner {
         if (isfloat) {
             addToken(FNUMBER, Double.parseDouble(source.substring(start, current)));
         } else {
-            addToken(INUMBER, Integer.parseInt(source.substring(start, current)));
+            // TOO BIG FOR AN int BECOMES A Long OR BigInteger LITERAL
+            addToken(INUMBER, Operators.narrow(new BigInteger(source.substring(start, current))));
         }
 
     }
@@ -192,6 +198,8 @@ public class Scanner {
             case ')': addToken(RIGHT_PAREN); break;
             case '{': addToken(LEFT_BRACE); break;
             case '}': addToken(RIGHT_BRACE); break;
+            case '[': addToken(LEFT_BRACKET); break;
+            case ']': addToken(RIGHT_BRACKET); break;
             case ',': addToken(COMMA); break;
             case '.': addToken(DOT); break;
             case '-': addToken(MINUS); break;
@@ -279,4 +287,10 @@ public class Scanner {
         this.source = source;
     }
 
+    // FOR A PIECE OF A LARGER FILE, SO ERRORS REPORT THE FILE'S LINE NUMBERS
+    public Scanner(String source, int line) {
+        this.source = source;
+        this.line = line;
+    }
+
 }
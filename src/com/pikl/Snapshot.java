@@ -0,0 +1,464 @@
+package com.pikl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    STARTUP SNAPSHOTS
+
+    --save-snapshot=FILE RUNS THE SCRIPT AS USUAL, THEN WRITES globals AND
+    EVERYTHING REACHABLE FROM IT (ENVIRONMENTS, FUNCTIONS, CLASSES,
+    INSTANCES, LISTS, MAPS) TO FILE. --snapshot=FILE MAPS THE FILE AND
+    REBUILDS THAT HEAP INSTEAD OF RUNNING THE SETUP AGAIN.
+
+    CODE ISN'T SERIALISED. THE SETUP SOURCE IS STORED IN THE SNAPSHOT AND
+    RE-PARSED AND RE-RESOLVED (NOT RUN) ON RESTORE, FUNCTIONS POINT AT
+    THEIR DECLARATION BY ITS POSITION IN A PRE-ORDER WALK OF THAT AST.
+
+    LAYOUT, BIG ENDIAN:
+        MAGIC, VERSION
+        SOURCE COUNT, THEN EACH SOURCE AS LENGTH + UTF-8
+        OBJECT COUNT
+        SHELLS   ONE PER OBJECT IN ID ORDER, ENOUGH TO CONSTRUCT IT. AN
+                 OBJECT'S CONSTRUCTOR ARGUMENTS (ENCLOSING ENVIRONMENT,
+                 CLOSURE, SUPERCLASS, CLASS) ALWAYS HAVE SMALLER IDS
+        CONTENTS ONE PER OBJECT IN ID ORDER, THE VALUES INSIDE IT, WHICH
+                 MAY POINT ANYWHERE SO CYCLES ARE FINE
+
+    ID 0 IS ALWAYS globals
+
+ */
+
+final class Snapshot {
+
+    private static final int MAGIC = 0x504B4C53;        // "PKLS"
+    private static final int VERSION = 1;
+
+    // OBJECT KINDS
+    private static final byte ENVIRONMENT = 1;
+    private static final byte FUNCTION = 2;
+    private static final byte CLASS = 3;
+    private static final byte INSTANCE = 4;
+    private static final byte LIST = 5;
+    private static final byte MAP = 6;
+    private static final byte NATIVE = 7;
+
+    // VALUE TAGS
+    private static final byte NIL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte REF = 6;
+    private static final byte LONG = 7;
+    private static final byte BIG = 8;
+
+    private Snapshot() {}
+
+    // WRITING
+
+    private static class Writer {
+        private final Interpreter interpreter;
+        private final Map<Statement.Function, Integer> declarations;
+        private final Map<Object, Integer> ids = new IdentityHashMap<>();
+        private final List<Object> objects = new ArrayList<>();
+        private final Deque<Object> pending = new ArrayDeque<>();
+
+        // BUILT-INS ARE WRITTEN BY NAME AND TAKEN FROM THE NEW INTERPRETER
+        private final Map<Object, String> natives = new IdentityHashMap<>();
+
+        Writer(Interpreter interpreter, Map<Statement.Function, Integer> declarations) {
+            this.interpreter = interpreter;
+            this.declarations = declarations;
+
+            for (Map.Entry<String, Object> entry : interpreter.builtins.entrySet()) {
+                natives.put(entry.getValue(), entry.getKey());
+            }
+        }
+
+        // NUMBER EVERYTHING REACHABLE FROM globals
+
+        void collect() {
+            id(interpreter.globals);
+            while (!pending.isEmpty()) {
+                for (Object value : contents(pending.pop())) {
+                    if (value != null) id(value);
+                }
+            }
+        }
+
+        private Integer id(Object object) {
+            if (isPrimitive(object)) return null;
+
+            Integer id = ids.get(object);
+            if (id != null) return id;
+
+            // CONSTRUCTOR ARGUMENTS FIRST, SO THEY GET THE SMALLER IDS
+            if (natives.containsKey(object)) {
+                // NOTHING TO CONSTRUCT
+            } else if (object instanceof Environment) {
+                Environment enclosing = ((Environment)object).enclosing;
+                if (enclosing != null) id(enclosing);
+            } else if (object instanceof PklFunction) {
+                PklFunction function = (PklFunction)object;
+                if (!declarations.containsKey(function.declaration)) {
+                    throw new SnapshotError("Cannot snapshot '" +
+                            function.declaration.name.lexeme + "', it was not declared in the saved scripts.");
+                }
+                id(function.closure);
+            } else if (object instanceof PklClass) {
+                PklClass superclass = ((PklClass)object).superclass;
+                if (superclass != null) id(superclass);
+            } else if (object instanceof PklInstance) {
+                id(((PklInstance)object).klass());
+            } else if (!(object instanceof PklList) && !(object instanceof PklMap)) {
+                throw new SnapshotError("Cannot snapshot " + object + ".");
+            }
+
+            id = objects.size();
+            ids.put(object, id);
+            objects.add(object);
+            pending.add(object);
+            return id;
+        }
+
+        private List<Object> contents(Object object) {
+            List<Object> values = new ArrayList<>();
+            if (natives.containsKey(object)) return values;
+
+            if (object instanceof Environment) {
+                values.addAll(((Environment)object).values().values());
+            } else if (object instanceof PklClass) {
+                values.addAll(((PklClass)object).methods().values());
+            } else if (object instanceof PklInstance) {
+                values.addAll(((PklInstance)object).fields().values());
+            } else if (object instanceof PklList) {
+                PklList list = (PklList)object;
+                for (int i = 0; i < list.size(); i++) values.add(list.get(i));
+            } else if (object instanceof PklMap) {
+                PklMap map = (PklMap)object;
+                PklList keys = map.keys();
+                PklList entries = map.values();
+                for (int i = 0; i < keys.size(); i++) {
+                    values.add(keys.get(i));
+                    values.add(entries.get(i));
+                }
+            }
+            return values;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(objects.size());
+
+            for (Object object : objects) {
+                if (natives.containsKey(object)) {
+                    out.writeByte(NATIVE);
+                    writeString(out, natives.get(object));
+                } else if (object instanceof Environment) {
+                    Environment enclosing = ((Environment)object).enclosing;
+                    out.writeByte(ENVIRONMENT);
+                    out.writeInt(enclosing == null ? -1 : ids.get(enclosing));
+                } else if (object instanceof PklFunction) {
+                    PklFunction function = (PklFunction)object;
+                    out.writeByte(FUNCTION);
+                    out.writeInt(declarations.get(function.declaration));
+                    out.writeInt(ids.get(function.closure));
+                    out.writeBoolean(function.isInitializer);
+                } else if (object instanceof PklClass) {
+                    PklClass klass = (PklClass)object;
+                    out.writeByte(CLASS);
+                    writeString(out, klass.name);
+                    out.writeInt(klass.superclass == null ? -1 : ids.get(klass.superclass));
+                } else if (object instanceof PklInstance) {
+                    out.writeByte(INSTANCE);
+                    out.writeInt(ids.get(((PklInstance)object).klass()));
+                } else if (object instanceof PklList) {
+                    out.writeByte(LIST);
+                    out.writeByte(((PklList)object).storage());
+                } else {
+                    out.writeByte(MAP);
+                }
+            }
+
+            for (Object object : objects) {
+                if (natives.containsKey(object)) continue;
+
+                if (object instanceof Environment) {
+                    writeEntries(out, ((Environment)object).values());
+                } else if (object instanceof PklClass) {
+                    writeEntries(out, ((PklClass)object).methods());
+                } else if (object instanceof PklInstance) {
+                    writeEntries(out, ((PklInstance)object).fields());
+                } else if (object instanceof PklList) {
+                    PklList list = (PklList)object;
+                    out.writeInt(list.size());
+                    for (int i = 0; i < list.size(); i++) writeValue(out, list.get(i));
+                } else if (object instanceof PklMap) {
+                    PklMap map = (PklMap)object;
+                    PklList keys = map.keys();
+                    PklList values = map.values();
+                    out.writeInt(keys.size());
+                    for (int i = 0; i < keys.size(); i++) {
+                        writeValue(out, keys.get(i));
+                        writeValue(out, values.get(i));
+                    }
+                }
+            }
+        }
+
+        private void writeEntries(DataOutputStream out, Map<String, ?> entries) throws IOException {
+            out.writeInt(entries.size());
+            for (Map.Entry<String, ?> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+
+        private void writeValue(DataOutputStream out, Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NIL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((boolean)value ? TRUE : FALSE);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((int)value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((long)value);
+            } else if (value instanceof BigInteger) {
+                byte[] bytes = ((BigInteger)value).toByteArray();
+                out.writeByte(BIG);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((double)value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString(out, (String)value);
+            } else {
+                out.writeByte(REF);
+                out.writeInt(ids.get(value));
+            }
+        }
+    }
+
+    static void save(Interpreter interpreter, List<String> sources,
+                     List<Statement> statements, Path path) throws IOException {
+        Writer writer = new Writer(interpreter, number(statements));
+        writer.collect();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sources.size());
+            for (String source : sources) writeString(out, source);
+            writer.write(out);
+        }
+    }
+
+    // READING
+
+    static void restore(Interpreter interpreter, Path path) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new SnapshotError("Not a snapshot file.");
+        }
+
+        List<String> sources = new ArrayList<>();
+        int sourceCount = in.getInt();
+        for (int i = 0; i < sourceCount; i++) sources.add(readString(in));
+
+        // REBUILD THE CODE, WITHOUT RUNNING IT
+        List<Statement> statements = Loader.parse(sources, interpreter.lazy);
+        if (!Main.hadError) new Resolver(interpreter).resolve(statements);
+        if (Main.hadError) throw new SnapshotError("Snapshot source does not compile.");
+
+        Map<Statement.Function, Integer> numbers = number(statements);
+        Statement.Function[] byIndex = new Statement.Function[numbers.size()];
+        for (Map.Entry<Statement.Function, Integer> entry : numbers.entrySet()) {
+            byIndex[entry.getValue()] = entry.getKey();
+        }
+
+        Object[] objects = new Object[in.getInt()];
+
+        for (int id = 0; id < objects.length; id++) {
+            byte kind = in.get();
+            switch (kind) {
+                case NATIVE:
+                    objects[id] = interpreter.globals.values().get(readString(in));
+                    break;
+                case ENVIRONMENT: {
+                    int enclosing = in.getInt();
+                    objects[id] = id == 0 ? interpreter.globals
+                            : new Environment((Environment)objects[enclosing]);
+                    break;
+                }
+                case FUNCTION: {
+                    Statement.Function declaration = byIndex[in.getInt()];
+                    Environment closure = (Environment)objects[in.getInt()];
+                    objects[id] = new PklFunction(declaration, closure, in.get() != 0);
+                    break;
+                }
+                case CLASS: {
+                    String name = readString(in);
+                    int superclass = in.getInt();
+                    objects[id] = new PklClass(name,
+                            superclass < 0 ? null : (PklClass)objects[superclass], new HashMap<>());
+                    break;
+                }
+                case INSTANCE:
+                    objects[id] = new PklInstance((PklClass)objects[in.getInt()]);
+                    break;
+                case LIST:
+                    objects[id] = PklList.withStorage(in.get(), 0);
+                    break;
+                case MAP:
+                    objects[id] = new PklMap();
+                    break;
+                default:
+                    throw new SnapshotError("Corrupt snapshot.");
+            }
+        }
+
+        for (Object object : objects) {
+            if (object instanceof Environment) {
+                Environment environment = (Environment)object;
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    environment.define(readString(in), readValue(in, objects));
+                }
+            } else if (object instanceof PklClass) {
+                Map<String, PklFunction> methods = ((PklClass)object).methods();
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    methods.put(readString(in), (PklFunction)readValue(in, objects));
+                }
+                // A SUPERCLASS ALWAYS HAS A SMALLER ID, SO ITS TABLE IS ALREADY BUILT
+                ((PklClass)object).flatten();
+            } else if (object instanceof PklInstance) {
+                Map<String, Object> fields = ((PklInstance)object).fields();
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    fields.put(readString(in), readValue(in, objects));
+                }
+            } else if (object instanceof PklList) {
+                PklList list = (PklList)object;
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) list.append(readValue(in, objects));
+            } else if (object instanceof PklMap) {
+                PklMap map = (PklMap)object;
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    Object key = readValue(in, objects);
+                    map.put(key, readValue(in, objects));
+                }
+            }
+        }
+    }
+
+    private static Object readValue(ByteBuffer in, Object[] objects) {
+        byte tag = in.get();
+        switch (tag) {
+            case NIL: return null;
+            case TRUE: return true;
+            case FALSE: return false;
+            case INT: return in.getInt();
+            case LONG: return in.getLong();
+            case BIG: {
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                return new BigInteger(bytes);
+            }
+            case DOUBLE: return in.getDouble();
+            case STRING: return readString(in);
+            case REF: return objects[in.getInt()];
+            default: throw new SnapshotError("Corrupt snapshot.");
+        }
+    }
+
+    // SHARED
+
+    static class SnapshotError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SnapshotError(String message) {
+            super(message);
+        }
+    }
+
+    private static boolean isPrimitive(Object value) {
+        return value == null || value instanceof Boolean || value instanceof String ||
+                Operators.isNumber(value);
+    }
+
+    // NUMBER EVERY FUNCTION DECLARATION IN PRE-ORDER, PARSING LAZY BODIES
+    // FIRST SO THE NUMBERING DOESN'T DEPEND ON WHAT HAS BEEN CALLED
+
+    private static Map<Statement.Function, Integer> number(List<Statement> statements) {
+        Map<Statement.Function, Integer> numbers = new IdentityHashMap<>();
+        number(statements, numbers);
+        return numbers;
+    }
+
+    private static void number(List<Statement> statements, Map<Statement.Function, Integer> numbers) {
+        for (Statement statement : statements) {
+            number(statement, numbers);
+        }
+    }
+
+    private static void number(Statement statement, Map<Statement.Function, Integer> numbers) {
+        if (statement instanceof Statement.Function) {
+            Statement.Function function = (Statement.Function)statement;
+            numbers.put(function, numbers.size());
+            Resolver.complete(function);
+            number(function.body, numbers);
+        } else if (statement instanceof Statement.Class) {
+            for (Statement.Function method : ((Statement.Class)statement).methods) {
+                number(method, numbers);
+            }
+        } else if (statement instanceof Statement.Block) {
+            number(((Statement.Block)statement).statements, numbers);
+        } else if (statement instanceof Statement.If) {
+            Statement.If branch = (Statement.If)statement;
+            number(branch.thenBranch, numbers);
+            if (branch.elseBranch != null) number(branch.elseBranch, numbers);
+        } else if (statement instanceof Statement.While) {
+            number(((Statement.While)statement).body, numbers);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,5 +1,6 @@
 package com.pikl;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -11,6 +12,7 @@ public abstract class Statement {
         R visitExpressionStmt(Expression stmt);
         R visitFunctionStmt(Function stmt);
         R visitIfStmt(If stmt);
+        R visitImportStmt(Import stmt);
         R visitPrintStmt(Print stmt);
         R visitReturnStmt(Return stmt);
         R visitVarStmt(Var stmt);
@@ -27,6 +29,10 @@ public abstract class Statement {
         }
 
         final List<Statement> statements;
+
+        // RUNS IN THE ENCLOSING ENVIRONMENT. SET WHEN THE BLOCK DECLARES
+        // NOTHING, OR IS INSIDE A FRAME FUNCTION WHERE VARIABLES LIVE IN SLOTS
+        boolean flat = false;
     }
 
     static class Class extends Statement {
@@ -45,6 +51,9 @@ public abstract class Statement {
         final Token name;
         final com.pikl.Expression.VariableExpression superclass;
         final List<Statement.Function> methods;
+
+        // EVERY super.method IN THE BODY, COLLECTED BY THE RESOLVER
+        final List<com.pikl.Expression.SuperExpression> supers = new ArrayList<>();
     }
 
     static class Expression extends Statement {
@@ -72,7 +81,25 @@ public abstract class Statement {
 
         final Token name;
         final List<Token> parameters;
-        final List<Statement> body;
+        List<Statement> body;
+
+        // PRE-PARSED: body IS null UNTIL THE FIRST CALL, THESE HOLD THE
+        // TOKENS STILL TO PARSE AND THE RESOLVER STATE TO RESOLVE THEM IN
+        List<Token> lazyBody;
+        Resolver lazyResolver;
+
+        // REGISTER VM CODE, COMPILED ON FIRST CALL (null IF IT CAN'T BE)
+        boolean compiled = false;
+        Chunk chunk;
+
+        // SLOTS NEEDED WHEN ITS LOCALS LIVE ON THE INTERPRETER'S FRAME
+        // STACK, -1 IF IT DECLARES CLOSURES AND NEEDS ENVIRONMENTS
+        int frameSize = -1;
+
+        // CALLS AND LOOP ITERATIONS SEEN SO FAR, AND THE JIT'S CODE ONCE HOT
+        int hotness = 0;
+        boolean jitted = false;
+        JitCode jitCode;
     }
 
     static class If extends Statement {
@@ -91,6 +118,23 @@ public abstract class Statement {
         final Statement elseBranch;
     }
 
+    static class Import extends Statement {
+        Import(Token keyword, String path) {
+            this.keyword = keyword;
+            this.path = path;
+        }
+
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportStmt(this);
+        }
+
+        final Token keyword;
+        final String path;
+
+        // DIRECTORY OF THE IMPORTING MODULE, null FOR THE MAIN SCRIPT
+        java.nio.file.Path directory;
+    }
+
     static class Print extends Statement {
         Print(com.pikl.Expression expression) {
             this.expression = expression;
@@ -129,6 +173,9 @@ public abstract class Statement {
 
         final Token name;
         final com.pikl.Expression initializer;
+
+        // FRAME SLOT INSIDE A FRAME FUNCTION, ELSE -1
+        int slot = -1;
     }
 
     static class While extends Statement {
@@ -143,6 +190,34 @@ public abstract class Statement {
 
         final com.pikl.Expression condition;
         final Statement body;
+
+        // CACHES FOR THE LOOP INVARIANT EXPRESSIONS IN condition AND body,
+        // CLEARED ON ENTRY. null IF THERE ARE NONE
+        List<com.pikl.Expression.Invariant> invariants;
+
+        // SET BY THE PARSER FOR for (var i = a; i < b; i = i + 1) LOOPS,
+        // CLEARED BY THE RESOLVER IF THE BODY ASSIGNS OR CAPTURES i
+        Counted counted;
+
+        static class Counted {
+            Counted(com.pikl.Expression.VariableExpression variable, boolean inclusive,
+                    com.pikl.Expression limit, Statement body,
+                    com.pikl.Expression.AssignExpression increment) {
+                this.variable = variable;
+                this.inclusive = inclusive;
+                this.limit = limit;
+                this.body = body;
+                this.increment = increment;
+            }
+
+            final com.pikl.Expression.VariableExpression variable;
+            final boolean inclusive;
+            final com.pikl.Expression limit;
+            final Statement body;
+            final com.pikl.Expression.AssignExpression increment;
+
+            boolean assigned = false;
+        }
     }
 
     abstract <R> R accept(Visitor<R> visitor);
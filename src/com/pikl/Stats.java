@@ -0,0 +1,114 @@
+package com.pikl;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+
+    RUNTIME COUNTERS AND PER-PHASE TIMINGS
+
+    THE COUNTERS ARE PLAIN STATIC FIELDS BUMPED DIRECTLY BY THE RUNTIME,
+    SO KEEPING THEM ON COSTS ONE INCREMENT PER EVENT.
+    THEY CAN BE READ THROUGH JMX (--jmx) OR DUMPED AT EXIT (--stats)
+
+ */
+
+class Stats implements StatsMBean {
+
+    static long functionCalls = 0;
+    static long instancesAllocated = 0;
+    static long environmentsCreated = 0;
+    static long propertyLookups = 0;
+
+    // HITS AND MISSES OF ANY INLINE CACHE IN THE RUNTIME
+    static long cacheHits = 0;
+    static long cacheMisses = 0;
+
+    // FUNCTIONS THE JIT TURNED INTO JVM CLASSES
+    static long functionsCompiled = 0;
+
+    // WALL TIME OF EACH PHASE IN NANOSECONDS
+    static long scanTime = 0;
+    static long parseTime = 0;
+    static long resolveTime = 0;
+    static long executeTime = 0;
+
+    static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new Stats(), new ObjectName("com.pikl:type=Stats"));
+        } catch (JMException e) {
+            System.err.println("Unable to register stats MBean: " + e.getMessage());
+        }
+    }
+
+    static void dump(PrintStream out) {
+        out.println("---- stats ----");
+        out.println("function calls       " + functionCalls);
+        out.println("instances allocated  " + instancesAllocated);
+        out.println("environments created " + environmentsCreated);
+        out.println("property lookups     " + propertyLookups);
+        out.println("cache hits           " + cacheHits);
+        out.println("cache misses         " + cacheMisses);
+        out.println("functions compiled   " + functionsCompiled);
+        out.println("scan                 " + millis(scanTime) + " ms");
+        out.println("parse                " + millis(parseTime) + " ms");
+        out.println("resolve              " + millis(resolveTime) + " ms");
+        out.println("execute              " + millis(executeTime) + " ms");
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    @Override
+    public long getFunctionCalls() { return functionCalls; }
+
+    @Override
+    public long getInstancesAllocated() { return instancesAllocated; }
+
+    @Override
+    public long getEnvironmentsCreated() { return environmentsCreated; }
+
+    @Override
+    public long getPropertyLookups() { return propertyLookups; }
+
+    @Override
+    public long getCacheHits() { return cacheHits; }
+
+    @Override
+    public long getCacheMisses() { return cacheMisses; }
+
+    @Override
+    public long getFunctionsCompiled() { return functionsCompiled; }
+
+    @Override
+    public long getScanMillis() { return millis(scanTime); }
+
+    @Override
+    public long getParseMillis() { return millis(parseTime); }
+
+    @Override
+    public long getResolveMillis() { return millis(resolveTime); }
+
+    @Override
+    public long getExecuteMillis() { return millis(executeTime); }
+
+    @Override
+    public void reset() {
+        functionCalls = 0;
+        instancesAllocated = 0;
+        environmentsCreated = 0;
+        propertyLookups = 0;
+        cacheHits = 0;
+        cacheMisses = 0;
+        functionsCompiled = 0;
+        scanTime = 0;
+        parseTime = 0;
+        resolveTime = 0;
+        executeTime = 0;
+    }
+}
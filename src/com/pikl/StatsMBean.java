@@ -0,0 +1,26 @@
+package com.pikl;
+
+/*
+
+    JMX VIEW OF THE RUNTIME COUNTERS KEPT IN Stats
+
+ */
+
+public interface StatsMBean {
+
+    long getFunctionCalls();
+    long getInstancesAllocated();
+    long getEnvironmentsCreated();
+    long getPropertyLookups();
+    long getCacheHits();
+    long getCacheMisses();
+    long getFunctionsCompiled();
+
+    long getScanMillis();
+    long getParseMillis();
+    long getResolveMillis();
+    long getExecuteMillis();
+
+    void reset();
+
+}
@@ -0,0 +1,365 @@
+package com.pikl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    STATIC TYPES FOR THE LOCALS OF A FRAME FUNCTION
+
+    A FRAME FUNCTION DECLARES NO CLOSURES, SO ONLY ITS OWN CODE CAN ASSIGN
+    ITS LOCALS. EACH var GETS THE TYPE OF EVERY VALUE EVER ASSIGNED TO IT:
+    THEY START UNSET AND ARE NARROWED BY WALKING THE BODY AGAIN UNTIL
+    NOTHING CHANGES. PARAMETERS, GLOBALS, CALLS AND PROPERTIES ARE UNKNOWN
+
+    A FINAL WALK MARKS ARITHMETIC AND COMPARISONS ON TWO Doubles, AND
+    CONCATENATIONS OF A String WITH A KNOWN NON nil VALUE, SO THE
+    INTERPRETER RUNS THEM WITHOUT TRYING THE OTHER TYPES FIRST. AN INTEGER
+    LITERAL NEXT TO A Double IS MADE A Double, AS IT WOULD BE ANYWAY
+
+    INTEGERS ARE NOT TRACKED, ANY int RESULT CAN OVERFLOW INTO A Long
+
+ */
+
+class Typer implements Expression.Visitor<Typer.Type>, Statement.Visitor<Void> {
+
+    enum Type {
+        UNSET,
+        BOOLEAN,
+        DOUBLE,
+        STRING,
+        UNKNOWN;
+
+        Type meet(Type other) {
+            if (this == UNSET || this == other) return other;
+            if (other == UNSET) return this;
+            return UNKNOWN;
+        }
+    }
+
+    // THE TYPE OF EACH var, AND THE SCOPES MAPPING NAMES TO THEM. A
+    // PARAMETER MAPS TO null
+    private final Map<Statement.Var, Type> types = new IdentityHashMap<>();
+    private final List<Map<String, Statement.Var>> scopes = new ArrayList<>();
+
+    private boolean changed;
+    private boolean marking = false;
+
+    static void infer(Statement.Function function) {
+        new Typer().function(function);
+    }
+
+    private void function(Statement.Function function) {
+        do {
+            changed = false;
+            walk(function);
+        } while (changed);
+
+        marking = true;
+        walk(function);
+    }
+
+    private void walk(Statement.Function function) {
+        beginScope();
+        for (Token parameter : function.parameters) {
+            scopes.get(scopes.size() - 1).put(parameter.lexeme, null);
+        }
+        for (Statement statement : function.body) {
+            statement.accept(this);
+        }
+        endScope();
+    }
+
+    private void beginScope() {
+        scopes.add(new HashMap<String, Statement.Var>());
+    }
+
+    private void endScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void declare(Statement.Var var, Type type) {
+        scopes.get(scopes.size() - 1).put(var.name.lexeme, var);
+        assign(var, type);
+    }
+
+    private void assign(Statement.Var var, Type type) {
+        Type old = types.get(var);
+        if (old == null) old = Type.UNSET;
+
+        Type now = old.meet(type);
+        if (now != old) {
+            types.put(var, now);
+            changed = true;
+        }
+    }
+
+    private Statement.Var lookup(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Map<String, Statement.Var> scope = scopes.get(i);
+            if (scope.containsKey(name.lexeme)) return scope.get(name.lexeme);
+        }
+        return null;
+    }
+
+    private Type type(Expression expr) {
+        return expr == null ? Type.UNKNOWN : expr.accept(this);
+    }
+
+    private static Type type(Object value) {
+        if (value instanceof Double) return Type.DOUBLE;
+        if (value instanceof String) return Type.STRING;
+        if (value instanceof Boolean) return Type.BOOLEAN;
+        return Type.UNKNOWN;
+    }
+
+    private static boolean known(Type type) {
+        return type != Type.UNSET && type != Type.UNKNOWN;
+    }
+
+    private static boolean isInteger(Expression expr) {
+        return expr instanceof Expression.LiteralExpression &&
+                Operators.isNumber(((Expression.LiteralExpression)expr).value) &&
+                !(((Expression.LiteralExpression)expr).value instanceof Double);
+    }
+
+    private static Expression toDouble(Expression expr) {
+        if (!isInteger(expr)) return expr;
+        return new Expression.LiteralExpression(((Number)((Expression.LiteralExpression)expr).value).doubleValue());
+    }
+
+    // EXPRESSIONS
+
+    @Override
+    public Type visitAssignExpr(Expression.AssignExpression expr) {
+        Type type = type(expr.value);
+        Statement.Var var = lookup(expr.name);
+        if (var != null) assign(var, type);
+        return type;
+    }
+
+    @Override
+    public Type visitBinaryExpr(Expression.BinaryExpression expr) {
+        Type left = type(expr._left);
+        Type right = type(expr._right);
+
+        switch (expr._type.type) {
+            case BANG_EQUAL:
+            case EQUAL_EQUAL:
+                return Type.BOOLEAN;
+
+            case PLUS:
+                if (left == Type.STRING || right == Type.STRING) {
+                    if (marking && known(left) && known(right)) {
+                        expr.operands = Type.STRING;
+                    }
+                    return Type.STRING;
+                }
+                return arithmetic(expr, left, right);
+
+            case MINUS:
+            case STAR:
+            case SLASH:
+                return arithmetic(expr, left, right);
+
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                doubles(expr, left, right);
+                return Type.BOOLEAN;
+        }
+
+        return Type.UNKNOWN;
+    }
+
+    private Type arithmetic(Expression.BinaryExpression expr, Type left, Type right) {
+        return doubles(expr, left, right) ? Type.DOUBLE : Type.UNKNOWN;
+    }
+
+    // MARK expr IF BOTH OPERANDS ARE Doubles, OR ONE IS AND THE OTHER IS AN
+    // INTEGER LITERAL
+
+    private boolean doubles(Expression.BinaryExpression expr, Type left, Type right) {
+        boolean doubles = (left == Type.DOUBLE || isInteger(expr._left)) &&
+                (right == Type.DOUBLE || isInteger(expr._right)) &&
+                (left == Type.DOUBLE || right == Type.DOUBLE);
+
+        if (doubles && marking) {
+            expr._left = toDouble(expr._left);
+            expr._right = toDouble(expr._right);
+            expr.operands = Type.DOUBLE;
+        }
+        return doubles;
+    }
+
+    @Override
+    public Type visitCallExpr(Expression.CallExpression expr) {
+        type(expr.callee);
+
+        List<Type> arguments = new ArrayList<>();
+        for (Expression argument : expr.arguments) {
+            arguments.add(type(argument));
+        }
+
+        // AN INLINED COPY'S PARAMETERS ONLY EVER HOLD THE ARGUMENTS
+        if (expr.inlined != null) {
+            beginScope();
+            for (int i = 0; i < arguments.size(); i++) {
+                declare(expr.inlinedParameters.get(i), arguments.get(i));
+            }
+            for (Statement statement : expr.inlined.statements) {
+                statement.accept(this);
+            }
+            if (expr.inlinedResult != null) type(expr.inlinedResult);
+            endScope();
+        }
+
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitGetExpr(Expression.GetExpression expr) {
+        type(expr.object);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitGroupingExpr(Expression.GroupExpression expr) {
+        return type(expr._left);
+    }
+
+    @Override
+    public Type visitIndexExpr(Expression.IndexExpression expr) {
+        type(expr.object);
+        type(expr.index);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitLiteralExpr(Expression.LiteralExpression expr) {
+        return type(expr.value);
+    }
+
+    @Override
+    public Type visitLogicalExpr(Expression.LogicalExpression expr) {
+        // THE VALUE IS ONE OF THE OPERANDS
+        return type(expr.left).meet(type(expr.right));
+    }
+
+    @Override
+    public Type visitSetExpr(Expression.SetExpression expr) {
+        type(expr.object);
+        type(expr.value);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitSetIndexExpr(Expression.SetIndexExpression expr) {
+        type(expr.object);
+        type(expr.index);
+        type(expr.value);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitSuperExpr(Expression.SuperExpression expr) {
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitThisExpr(Expression.ThisExpression expr) {
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitUnaryExpr(Expression.UnaryExpression expr) {
+        Type operand = type(expr._left);
+
+        if (expr._type.type == TokenType.BANG) return Type.BOOLEAN;
+        if (operand != Type.DOUBLE) return Type.UNKNOWN;
+
+        if (marking) expr.operand = Type.DOUBLE;
+        return Type.DOUBLE;
+    }
+
+    @Override
+    public Type visitVariableExpr(Expression.VariableExpression expr) {
+        Statement.Var var = lookup(expr.name);
+        if (var == null) return Type.UNKNOWN;
+
+        Type type = types.get(var);
+        return type == null ? Type.UNSET : type;
+    }
+
+    // STATEMENTS
+
+    @Override
+    public Void visitBlockStmt(Statement.Block stmt) {
+        beginScope();
+        for (Statement statement : stmt.statements) {
+            statement.accept(this);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Statement.Class stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Statement.Expression stmt) {
+        type(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Statement.Function stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Statement.If stmt) {
+        type(stmt.condition);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Statement.Import stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Statement.Print stmt) {
+        type(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Statement.Return stmt) {
+        if (stmt.value != null) type(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Statement.Var stmt) {
+        // THE INITIALIZER CAN'T SEE THE NEW NAME
+        Type type = stmt.initializer == null ? Type.UNKNOWN : type(stmt.initializer);
+        declare(stmt, type);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Statement.While stmt) {
+        type(stmt.condition);
+        stmt.body.accept(this);
+        return null;
+    }
+}
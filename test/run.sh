@@ -0,0 +1,21 @@
+#!/bin/sh
+# REGRESSION SCRIPTS: RUNS EVERY test/*.pkl AND COMPARES ITS OUTPUT WITH
+# THE .out FILE NEXT TO IT. ANY ARGUMENTS ARE PASSED ON AS OPTIONS,
+# e.g. test/run.sh --vm. SCRIPTS WRITE ANY SCRATCH FILES AS *.tmp
+
+cd "$(dirname "$0")"
+classes=$(mktemp -d)
+trap 'rm -rf "$classes" *.tmp' EXIT
+
+javac -d "$classes" $(find ../src -name '*.java') || exit 1
+
+failed=0
+for script in *.pkl; do
+    if java -cp "$classes" com.pikl.Main "$script" "$@" 2>&1 | diff -u "${script%.pkl}.out" - > /dev/null; then
+        echo "ok   $script"
+    else
+        echo "FAIL $script"
+        failed=1
+    fi
+done
+exit $failed